@@ -0,0 +1,10 @@
+ALTER TABLE episode
+    ADD COLUMN file_hash BIGINT NULL;
+
+UPDATE episode
+SET file_hash = ('x' || left(encode(sha256(convert_to(file_name, 'UTF8')), 'hex'), 16))::bit(64)::bigint;
+
+ALTER TABLE episode
+    ALTER COLUMN file_hash SET NOT NULL;
+
+CREATE INDEX episode_show_id_file_hash_idx ON episode (show_id, file_hash);
\ No newline at end of file
@@ -0,0 +1,37 @@
+UPDATE episode
+SET show_id = (SELECT min(s2.id)
+               FROM show s1
+                        JOIN show s2 ON s2.folder_name = s1.folder_name
+               WHERE s1.id = episode.show_id);
+
+UPDATE show
+SET tvdb_id    = mapped.tvdb_id,
+    tvdb_name  = mapped.tvdb_name,
+    tvdb_image = mapped.tvdb_image
+FROM (SELECT DISTINCT ON (folder_name) folder_name, tvdb_id, tvdb_name, tvdb_image
+      FROM show
+      WHERE tvdb_id IS NOT NULL
+      ORDER BY folder_name, id) mapped
+WHERE show.folder_name = mapped.folder_name
+  AND show.tvdb_id IS NULL
+  AND show.id = (SELECT min(id)
+                 FROM show s
+                 WHERE s.folder_name = show.folder_name);
+
+DELETE
+FROM show
+WHERE id NOT IN (SELECT min(id)
+                 FROM show
+                 GROUP BY folder_name);
+
+DELETE
+FROM episode
+WHERE id NOT IN (SELECT min(id)
+                 FROM episode
+                 GROUP BY show_id, file_name);
+
+ALTER TABLE show
+    ADD CONSTRAINT show_folder_name_key UNIQUE (folder_name);
+
+ALTER TABLE episode
+    ADD CONSTRAINT episode_show_id_file_name_key UNIQUE (show_id, file_name);
\ No newline at end of file
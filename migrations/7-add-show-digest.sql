@@ -0,0 +1,14 @@
+ALTER TABLE show
+    ADD COLUMN episode_count  INTEGER NOT NULL DEFAULT 0,
+    ADD COLUMN episode_digest BIGINT  NOT NULL DEFAULT 0;
+
+UPDATE show
+SET episode_count  = digests.episode_count,
+    episode_digest = digests.episode_digest
+FROM (SELECT show_id,
+             count(*) AS episode_count,
+             bit_xor(('x' || left(encode(sha256(convert_to(file_name, 'UTF8')), 'hex'), 16))::bit(64)::bigint)
+                      AS episode_digest
+      FROM episode
+      GROUP BY show_id) digests
+WHERE show.id = digests.show_id;
\ No newline at end of file
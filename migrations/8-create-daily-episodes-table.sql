@@ -0,0 +1,13 @@
+CREATE TABLE daily_episodes
+(
+    day           DATE    NOT NULL,
+    show_id       INTEGER NOT NULL REFERENCES show (id),
+    episode_count INTEGER NOT NULL,
+    PRIMARY KEY (day, show_id)
+);
+
+INSERT INTO daily_episodes (day, show_id, episode_count)
+SELECT timestamp::date, show_id, count(*)
+FROM episode
+WHERE show_id IS NOT NULL
+GROUP BY timestamp::date, show_id;
\ No newline at end of file
@@ -0,0 +1,5 @@
+CREATE INDEX episode_show_id_timestamp_id_idx ON episode (show_id, timestamp, id);
+
+CREATE INDEX episode_timestamp_id_idx ON episode (timestamp, id);
+
+CREATE INDEX show_tvdb_id_idx ON show (tvdb_id);
\ No newline at end of file
@@ -0,0 +1,101 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.SHOW;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.annotation.Nullable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Objects;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+
+/**
+ * Database for the benchmarks and load tests, which truncate it before seeding. Starts an embedded
+ * Postgres with the migrations applied, so results can be reproduced offline.
+ *
+ * <p>Set BENCHMARK_DATABASE_URL to run against a migrated external database instead. It is never
+ * read from the application's DATABASE_URL, and a database which already has shows is refused
+ * unless BENCHMARK_DATABASE_WIPE=true confirms they can be deleted.
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+    @Nullable private final EmbeddedPostgres embedded;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final Connection connection;
+    private final DSLContext ctx;
+
+    private BenchmarkDatabase(
+            @Nullable EmbeddedPostgres embedded, String url, String username, String password)
+            throws SQLException {
+        this.embedded = embedded;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.connection = DriverManager.getConnection(url, username, password);
+        this.ctx = DSL.using(connection, SQLDialect.POSTGRES);
+    }
+
+    public static BenchmarkDatabase start() throws IOException, SQLException {
+        var url = System.getenv("BENCHMARK_DATABASE_URL");
+        if (url != null) {
+            var username = env("BENCHMARK_DATABASE_USERNAME", "user");
+            var password = env("BENCHMARK_DATABASE_PASSWORD", "password");
+            var database = new BenchmarkDatabase(null, url, username, password);
+            if (!Boolean.parseBoolean(System.getenv("BENCHMARK_DATABASE_WIPE"))
+                    && database.ctx.fetchExists(SHOW)) {
+                database.close();
+                throw new IllegalStateException(
+                        url
+                                + " already has shows, set BENCHMARK_DATABASE_WIPE=true to let the"
+                                + " benchmarks delete them");
+            }
+            return database;
+        }
+
+        var embedded = EmbeddedDatabase.start();
+        try {
+            return new BenchmarkDatabase(
+                    embedded,
+                    embedded.getJdbcUrl(EmbeddedDatabase.USERNAME, EmbeddedDatabase.DATABASE_NAME),
+                    EmbeddedDatabase.USERNAME,
+                    EmbeddedDatabase.PASSWORD);
+        } catch (SQLException | RuntimeException e) {
+            embedded.close();
+            throw e;
+        }
+    }
+
+    public String url() {
+        return url;
+    }
+
+    public String username() {
+        return username;
+    }
+
+    public String password() {
+        return password;
+    }
+
+    /** A single connection shared by the caller, not safe for concurrent use. */
+    public DSLContext ctx() {
+        return ctx;
+    }
+
+    @Override
+    public void close() throws IOException, SQLException {
+        connection.close();
+        if (embedded != null) {
+            embedded.close();
+        }
+    }
+
+    private static String env(String name, String defaultValue) {
+        return Objects.requireNonNullElse(System.getenv(name), defaultValue);
+    }
+}
@@ -0,0 +1,38 @@
+package com.jordansimsmith.immersion.tracker;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/** Measures the cost of rendering the chart PNG against the number of days of history. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChartBenchmark {
+    private static final LocalDate START = ImmersionTrackerController.IMMERSION_START_DATE;
+
+    @Param({"30", "365", "1825", "3650"})
+    public int days;
+
+    private SortedMap<LocalDate, Integer> episodesPerDay;
+
+    @Setup
+    public void setUp() {
+        var random = new Random(42);
+        episodesPerDay = new TreeMap<>();
+        for (var i = 0; i < days; i++) {
+            episodesPerDay.put(START.plusDays(i), 1 + random.nextInt(10));
+        }
+    }
+
+    @Benchmark
+    public byte[] render() {
+        return ChartRenderer.renderPng(START, 0, episodesPerDay, 800, 600);
+    }
+}
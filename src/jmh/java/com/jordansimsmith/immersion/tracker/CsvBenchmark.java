@@ -0,0 +1,54 @@
+package com.jordansimsmith.immersion.tracker;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the time to query and format a full CSV export, with and without compression.
+ *
+ * <p>Runs against the {@link BenchmarkDatabase}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CsvBenchmark {
+    private static final int EPISODES_PER_SHOW = 50;
+    private static final int PAGE_SIZE = 1000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int episodes;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private BenchmarkDatabase database;
+    private CsvExporter csvExporter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        database = BenchmarkDatabase.start();
+        csvExporter = new CsvExporter(database.ctx(), PAGE_SIZE);
+
+        SeedData.seed(
+                database.ctx(),
+                (episodes + EPISODES_PER_SHOW - 1) / EPISODES_PER_SHOW,
+                episodes,
+                3);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public void export() {
+        csvExporter.export(OutputStream.nullOutputStream(), gzip, null, null);
+    }
+}
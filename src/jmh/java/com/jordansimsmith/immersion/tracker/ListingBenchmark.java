@@ -0,0 +1,81 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.EPISODE;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jooq.DSLContext;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the latency of the first and a deep page of episodes as the table grows, comparing the
+ * keyset pagination of {@link ListingService} against an equivalent OFFSET query.
+ *
+ * <p>Runs against the {@link BenchmarkDatabase}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListingBenchmark {
+    private static final int EPISODES_PER_SHOW = 50;
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"10000", "100000", "1000000"})
+    public int episodes;
+
+    private BenchmarkDatabase database;
+    private DSLContext ctx;
+    private ListingService listingService;
+    private String deepCursor;
+    private int deepOffset;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        database = BenchmarkDatabase.start();
+        ctx = database.ctx();
+        listingService = new ListingService(ctx);
+
+        SeedData.seed(ctx, (episodes + EPISODES_PER_SHOW - 1) / EPISODES_PER_SHOW, episodes, 3);
+
+        // continue from the last row of the page 90% of the way through the table
+        deepOffset = episodes / 10 * 9;
+        var last =
+                ctx.select(EPISODE.TIMESTAMP, EPISODE.ID)
+                        .from(EPISODE)
+                        .orderBy(EPISODE.TIMESTAMP.asc(), EPISODE.ID.asc())
+                        .offset(deepOffset - 1)
+                        .limit(1)
+                        .fetchSingle();
+        deepCursor = ListingService.episodeCursor(last.value1(), last.value2());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public ListingService.Page firstPage() {
+        return listingService.listEpisodes(PAGE_SIZE, null, null, null, null, List.of());
+    }
+
+    @Benchmark
+    public ListingService.Page deepPage() {
+        return listingService.listEpisodes(PAGE_SIZE, deepCursor, null, null, null, List.of());
+    }
+
+    @Benchmark
+    public Object deepPageWithOffset() {
+        return ctx.select(EPISODE.ID, EPISODE.SHOW_ID, EPISODE.FILE_NAME, EPISODE.TIMESTAMP)
+                .from(EPISODE)
+                .orderBy(EPISODE.TIMESTAMP.asc(), EPISODE.ID.asc())
+                .offset(deepOffset)
+                .limit(PAGE_SIZE)
+                .fetch();
+    }
+}
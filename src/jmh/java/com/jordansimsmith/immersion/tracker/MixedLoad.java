@@ -0,0 +1,269 @@
+package com.jordansimsmith.immersion.tracker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jordansimsmith.immersion.tracker.ImmersionTrackerController.SyncEpisodesRequest;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+/**
+ * Drives a mix of slow syncs and cheap reads against the application in the platform thread and
+ * virtual thread execution modes, and reports the throughput and tail latency of each endpoint in
+ * both. Reads are mostly progress polls, with some charts, analytics and episode listings.
+ *
+ * <p>Boots the application on a random port against the {@link BenchmarkDatabase}, seeded with the
+ * same {@link SeedData} before each mode. Run with {@code ./gradlew loadTest}, overriding the
+ * defaults with {@code -Pload.clients=1000} and so on.
+ */
+public class MixedLoad {
+    private static final String FOLDER_PREFIX = "load test ";
+
+    // the share of reads going to each endpoint
+    private static final Map<String, Integer> READ_WEIGHTS =
+            Map.of(
+                    "/progress", 60,
+                    "/episodes?limit=100", 20,
+                    "/chart", 10,
+                    "/analytics?granularity=week", 10);
+
+    private static final class Endpoint {
+        private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger errors = new AtomicInteger();
+    }
+
+    public static void main(String[] args) throws Exception {
+        var clients = Integer.getInteger("load.clients", 500);
+        var warmup = Duration.ofSeconds(Long.getLong("load.warmup-seconds", 10));
+        var duration = Duration.ofSeconds(Long.getLong("load.duration-seconds", 30));
+        var shows = Integer.getInteger("load.shows", 500);
+        var episodes = Integer.getInteger("load.episodes", 50_000);
+        var syncRatio = Double.parseDouble(System.getProperty("load.sync-ratio", "0.05"));
+        var syncSize = Integer.getInteger("load.sync-size", 2000);
+        var syncAsync = Boolean.getBoolean("load.sync-async");
+
+        System.out.printf(
+                "%d clients over %d shows and %d episodes, %.0f%% %s syncs of %d episodes, "
+                        + "%ds after %ds warmup%n%n",
+                clients,
+                shows,
+                episodes,
+                syncRatio * 100,
+                syncAsync ? "queued" : "blocking",
+                syncSize,
+                duration.toSeconds(),
+                warmup.toSeconds());
+        System.out.printf(
+                "%-9s %-28s %9s %7s %9s %9s %9s %9s %9s%n",
+                "mode",
+                "endpoint",
+                "requests",
+                "errors",
+                "req/s",
+                "p50 ms",
+                "p95 ms",
+                "p99 ms",
+                "max ms");
+
+        try (var database = BenchmarkDatabase.start()) {
+            for (var virtual : List.of(false, true)) {
+                SeedData.seed(database.ctx(), shows, episodes, 3);
+
+                var context =
+                        new SpringApplicationBuilder(ImmersionTrackerApplication.class)
+                                .properties(
+                                        "server.port=0",
+                                        "spring.threads.virtual.enabled=" + virtual,
+                                        "spring.datasource.url=" + database.url(),
+                                        "spring.datasource.username=" + database.username(),
+                                        "spring.datasource.password=" + database.password(),
+                                        "logging.level.root=WARN")
+                                .run(args);
+                try {
+                    var port =
+                            Objects.requireNonNull(
+                                    context.getEnvironment()
+                                            .getProperty("local.server.port", Integer.class));
+                    var load =
+                            new MixedLoad(
+                                    URI.create("http://localhost:" + port),
+                                    context.getBean(ObjectMapper.class),
+                                    syncRatio,
+                                    syncSize,
+                                    syncAsync);
+                    var results = load.run(clients, warmup, duration);
+                    for (var result : results.entrySet()) {
+                        var latencies = result.getValue().latencies;
+                        System.out.printf(
+                                "%-9s %-28s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                                virtual ? "virtual" : "platform",
+                                result.getKey(),
+                                latencies.size(),
+                                result.getValue().errors.get(),
+                                latencies.size() / (double) duration.toSeconds(),
+                                percentile(latencies, 0.50),
+                                percentile(latencies, 0.95),
+                                percentile(latencies, 0.99),
+                                percentile(latencies, 1.0));
+                    }
+                } finally {
+                    context.close();
+                }
+            }
+        }
+    }
+
+    private final URI baseUri;
+    private final ObjectMapper objectMapper;
+    private final double syncRatio;
+    private final int syncSize;
+    private final boolean syncAsync;
+    private final String authorization;
+    private final List<String> reads = new ArrayList<>();
+    private final AtomicInteger folders = new AtomicInteger();
+
+    private MixedLoad(
+            URI baseUri,
+            ObjectMapper objectMapper,
+            double syncRatio,
+            int syncSize,
+            boolean syncAsync) {
+        this.baseUri = baseUri;
+        this.objectMapper = objectMapper;
+        this.syncRatio = syncRatio;
+        this.syncSize = syncSize;
+        this.syncAsync = syncAsync;
+
+        var credentials =
+                env("API_USERNAME", "immersion_tracker") + ":" + env("API_PASSWORD", "password");
+        this.authorization =
+                "Basic "
+                        + Base64.getEncoder()
+                                .encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+
+        for (var weight : READ_WEIGHTS.entrySet()) {
+            reads.addAll(Collections.nCopies(weight.getValue(), weight.getKey()));
+        }
+    }
+
+    private Map<String, Endpoint> run(int clients, Duration warmup, Duration duration)
+            throws Exception {
+        var start = System.nanoTime() + warmup.toNanos();
+        var end = start + duration.toNanos();
+        var endpoints = new LinkedHashMap<String, Endpoint>();
+        endpoints.put("/sync", new Endpoint());
+        for (var read : READ_WEIGHTS.keySet()) {
+            endpoints.put(read, new Endpoint());
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+                var client =
+                        HttpClient.newBuilder()
+                                .executor(executor)
+                                .connectTimeout(Duration.ofSeconds(10))
+                                .build()) {
+            var tasks = new ArrayList<Future<?>>();
+            for (var i = 0; i < clients; i++) {
+                tasks.add(
+                        executor.submit(
+                                () -> {
+                                    var random = ThreadLocalRandom.current();
+                                    while (System.nanoTime() < end) {
+                                        var path =
+                                                random.nextDouble() < syncRatio
+                                                        ? "/sync"
+                                                        : reads.get(random.nextInt(reads.size()));
+                                        var req =
+                                                path.equals("/sync")
+                                                        ? syncRequest()
+                                                        : readRequest(path);
+                                        var requestStart = System.nanoTime();
+                                        var ok = send(client, req);
+                                        var latency = System.nanoTime() - requestStart;
+
+                                        // only record requests which started after the warmup
+                                        if (requestStart < start) {
+                                            continue;
+                                        }
+                                        var endpoint = endpoints.get(path);
+                                        endpoint.latencies.add(latency);
+                                        if (!ok) {
+                                            endpoint.errors.incrementAndGet();
+                                        }
+                                    }
+                                    return null;
+                                }));
+            }
+            for (var task : tasks) {
+                task.get();
+            }
+        }
+
+        return endpoints;
+    }
+
+    private HttpRequest syncRequest() throws Exception {
+        // every sync adds a new show, so each one does the full amount of work
+        var folderName = FOLDER_PREFIX + folders.incrementAndGet();
+        var episodes = new ArrayList<SyncEpisodesRequest>();
+        for (var i = 0; i < syncSize; i++) {
+            episodes.add(new SyncEpisodesRequest(folderName, "episode " + i + ".mkv"));
+        }
+
+        // queued syncs only measure the time to accept the job, not to write it
+        var path = syncAsync ? "/sync?async=true" : "/sync";
+        var body = objectMapper.writeValueAsBytes(episodes);
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Authorization", authorization)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofMinutes(1))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    private HttpRequest readRequest(String path) {
+        return HttpRequest.newBuilder(baseUri.resolve(path))
+                .timeout(Duration.ofMinutes(1))
+                .GET()
+                .build();
+    }
+
+    private static boolean send(HttpClient client, HttpRequest req) {
+        try {
+            var res = client.send(req, HttpResponse.BodyHandlers.discarding());
+            return res.statusCode() / 100 == 2;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static double percentile(List<Long> latencies, double percentile) {
+        if (latencies.isEmpty()) {
+            return Double.NaN;
+        }
+
+        var sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        var index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0)) / 1_000_000.0;
+    }
+
+    private static String env(String name, String defaultValue) {
+        return Objects.requireNonNullElse(System.getenv(name), defaultValue);
+    }
+}
@@ -0,0 +1,49 @@
+package com.jordansimsmith.immersion.tracker;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the latency of the progress aggregation as the watch history grows.
+ *
+ * <p>Runs against the {@link BenchmarkDatabase}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProgressBenchmark {
+    private static final int EPISODES_PER_SHOW = 50;
+
+    @Param({"10000", "100000", "1000000"})
+    public int episodes;
+
+    private BenchmarkDatabase database;
+    private ProgressService progressService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        database = BenchmarkDatabase.start();
+        progressService = new ProgressService(database.ctx());
+
+        SeedData.seed(
+                database.ctx(),
+                (episodes + EPISODES_PER_SHOW - 1) / EPISODES_PER_SHOW,
+                episodes,
+                3);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public ImmersionTrackerController.ProgressResponse progress() {
+        return progressService.progress();
+    }
+}
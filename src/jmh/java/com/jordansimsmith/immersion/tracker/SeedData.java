@@ -0,0 +1,148 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.EPISODE;
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.SHOW;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+
+/**
+ * Replaces the contents of the database with a generated watch history, so benchmarks run against
+ * the same data on every machine and every commit. The same seed always generates the same shows,
+ * episodes and timestamps.
+ *
+ * <p>Episode counts per show are skewed like a real history, with a few long series and many short
+ * ones. Episodes are watched in evening sessions spread evenly over the years.
+ */
+public final class SeedData {
+    public static final LocalDate START = ImmersionTrackerController.IMMERSION_START_DATE;
+    public static final long DEFAULT_SEED = 42;
+
+    private static final int CHUNK_SIZE = 100_000;
+
+    private SeedData() {}
+
+    public static void seed(DSLContext ctx, int shows, int episodes, int years) {
+        seed(ctx, shows, episodes, years, DEFAULT_SEED);
+    }
+
+    public static void seed(DSLContext ctx, int shows, int episodes, int years, long seed) {
+        if (shows < 1 || years < 1) {
+            throw new IllegalArgumentException("at least one show and year are required");
+        }
+
+        var random = new Random(seed);
+        ctx.truncate(SHOW).restartIdentity().cascade().execute();
+
+        // three in four shows have been mapped to a tvdb series
+        var showIds = new Integer[shows];
+        var folderNames = new String[shows];
+        var tvdbIds = new Integer[shows];
+        var tvdbNames = new String[shows];
+        for (var i = 0; i < shows; i++) {
+            showIds[i] = i + 1;
+            folderNames[i] = String.format("show %06d", i + 1);
+            if (random.nextInt(4) > 0) {
+                tvdbIds[i] = 100_000 + i;
+                tvdbNames[i] = "series " + (i + 1);
+            }
+        }
+
+        var showBatch =
+                DSL.table(
+                                "unnest({0}, {1}, {2}, {3})",
+                                DSL.val(showIds, SQLDataType.INTEGER.array()),
+                                DSL.val(folderNames, SQLDataType.CLOB.array()),
+                                DSL.val(tvdbIds, SQLDataType.INTEGER.array()),
+                                DSL.val(tvdbNames, SQLDataType.CLOB.array()))
+                        .as("batch", "id", "folder_name", "tvdb_id", "tvdb_name");
+        ctx.insertInto(SHOW, SHOW.ID, SHOW.FOLDER_NAME, SHOW.TVDB_ID, SHOW.TVDB_NAME)
+                .select(
+                        DSL.select(
+                                        DSL.field(DSL.name("batch", "id"), SQLDataType.INTEGER),
+                                        DSL.field(
+                                                DSL.name("batch", "folder_name"), SQLDataType.CLOB),
+                                        DSL.field(
+                                                DSL.name("batch", "tvdb_id"), SQLDataType.INTEGER),
+                                        DSL.field(DSL.name("batch", "tvdb_name"), SQLDataType.CLOB))
+                                .from(showBatch))
+                .execute();
+
+        // the ids were assigned above, so move the sequence past them for later syncs
+        ctx.execute("SELECT setval(pg_get_serial_sequence('show', 'id'), ?)", shows);
+
+        var days = years * 365;
+        var nextEpisode = new int[shows];
+        for (var offset = 0; offset < episodes; offset += CHUNK_SIZE) {
+            var size = Math.min(CHUNK_SIZE, episodes - offset);
+            var episodeShowIds = new Integer[size];
+            var fileNames = new String[size];
+            var fileHashes = new Long[size];
+            var timestamps = new LocalDateTime[size];
+            for (var i = 0; i < size; i++) {
+                // squaring a uniform sample favours the earlier shows
+                var show = (int) (shows * Math.pow(random.nextDouble(), 2));
+                episodeShowIds[i] = show + 1;
+                fileNames[i] = String.format("episode %05d.mkv", ++nextEpisode[show]);
+                fileHashes[i] = EpisodeDigests.hash(fileNames[i]);
+                timestamps[i] =
+                        START.plusDays(random.nextInt(days))
+                                .atTime(18, 0)
+                                .plusMinutes(random.nextInt(6 * 60));
+            }
+
+            var episodeBatch =
+                    DSL.table(
+                                    "unnest({0}, {1}, {2}, {3})",
+                                    DSL.val(episodeShowIds, SQLDataType.INTEGER.array()),
+                                    DSL.val(fileNames, SQLDataType.CLOB.array()),
+                                    DSL.val(fileHashes, SQLDataType.BIGINT.array()),
+                                    DSL.val(timestamps, SQLDataType.LOCALDATETIME.array()))
+                            .as("batch", "show_id", "file_name", "file_hash", "timestamp");
+            ctx.insertInto(
+                            EPISODE,
+                            EPISODE.SHOW_ID,
+                            EPISODE.FILE_NAME,
+                            EPISODE.FILE_HASH,
+                            EPISODE.TIMESTAMP)
+                    .select(
+                            DSL.select(
+                                            DSL.field(
+                                                    DSL.name("batch", "show_id"),
+                                                    SQLDataType.INTEGER),
+                                            DSL.field(
+                                                    DSL.name("batch", "file_name"),
+                                                    SQLDataType.CLOB),
+                                            DSL.field(
+                                                    DSL.name("batch", "file_hash"),
+                                                    SQLDataType.BIGINT),
+                                            DSL.field(
+                                                    DSL.name("batch", "timestamp"),
+                                                    SQLDataType.LOCALDATETIME))
+                                    .from(episodeBatch))
+                    .execute();
+        }
+
+        // rebuild the aggregates maintained by syncs the same way the migrations backfill them
+        ctx.execute(
+                "UPDATE show "
+                        + "SET episode_count = digests.episode_count, "
+                        + "episode_digest = digests.episode_digest "
+                        + "FROM (SELECT show_id, count(*) AS episode_count, "
+                        + "bit_xor(('x' || left(encode(sha256(convert_to(file_name, 'UTF8')), "
+                        + "'hex'), 16))::bit(64)::bigint) AS episode_digest "
+                        + "FROM episode GROUP BY show_id) digests "
+                        + "WHERE show.id = digests.show_id");
+        ctx.execute(
+                "INSERT INTO daily_episodes (day, show_id, episode_count) "
+                        + "SELECT timestamp::date, show_id, count(*) FROM episode "
+                        + "GROUP BY timestamp::date, show_id");
+        ctx.execute("ANALYZE show");
+        ctx.execute("ANALYZE episode");
+        ctx.execute("ANALYZE daily_episodes");
+    }
+}
@@ -0,0 +1,108 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.EPISODE;
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.SHOW;
+
+import com.jordansimsmith.immersion.tracker.ImmersionTrackerController.SyncEpisodesRequest;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the latency of a full sync against an empty database using the set-based {@link
+ * EpisodeSyncService} and the original per-episode implementation.
+ *
+ * <p>Runs against the {@link BenchmarkDatabase}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SyncBenchmark {
+    private static final int EPISODES_PER_SHOW = 50;
+
+    @Param({"1000", "10000", "100000"})
+    public int episodes;
+
+    @Param({"bulk", "per_episode"})
+    public String strategy;
+
+    private BenchmarkDatabase database;
+    private DSLContext ctx;
+    private List<SyncEpisodesRequest> req;
+    private EpisodeSyncService episodeSyncService;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException, SQLException {
+        database = BenchmarkDatabase.start();
+        ctx = database.ctx();
+        episodeSyncService = new EpisodeSyncService();
+
+        req = new ArrayList<>();
+        for (var i = 0; i < episodes; i++) {
+            req.add(
+                    new SyncEpisodesRequest(
+                            "show " + (i / EPISODES_PER_SHOW), "episode " + i + ".mkv"));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        ctx.truncate(EPISODE).restartIdentity().cascade().execute();
+        ctx.truncate(SHOW).restartIdentity().cascade().execute();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException, SQLException {
+        database.close();
+    }
+
+    @Benchmark
+    public int sync() {
+        return switch (strategy) {
+            case "bulk" -> episodeSyncService.sync(ctx, req);
+            case "per_episode" ->
+                    ctx.transactionResult((Configuration txn) -> syncPerEpisode(txn.dsl(), req));
+            default -> throw new IllegalArgumentException(strategy);
+        };
+    }
+
+    private static int syncPerEpisode(DSLContext txn, List<SyncEpisodesRequest> req) {
+        var episodesAdded = 0;
+        for (var episodeMessage : req) {
+            var show =
+                    txn.selectFrom(SHOW)
+                            .where(SHOW.FOLDER_NAME.eq(episodeMessage.folderName()))
+                            .fetchAny();
+            if (show == null) {
+                show = txn.newRecord(SHOW);
+                show.setFolderName(episodeMessage.folderName());
+                show.insert();
+            }
+
+            var episode =
+                    txn.selectFrom(EPISODE)
+                            .where(EPISODE.SHOW_ID.eq(show.getId()))
+                            .and(EPISODE.FILE_NAME.eq(episodeMessage.fileName()))
+                            .fetchAny();
+            if (episode == null) {
+                episode = txn.newRecord(EPISODE);
+                episode.setShowId(show.getId());
+                episode.setFileName(episodeMessage.fileName());
+                episode.setTimestamp(LocalDateTime.now());
+                episode.insert();
+                episodesAdded++;
+            }
+        }
+
+        return episodesAdded;
+    }
+}
@@ -0,0 +1,206 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.DAILY_EPISODES;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.annotation.Nullable;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Time-bucketed episode analytics in the Pacific/Auckland zone, served from the daily episode
+ * rollup rather than the episode table.
+ */
+@Service
+public class AnalyticsService {
+    public enum Granularity {
+        DAY,
+        WEEK,
+        MONTH
+    }
+
+    public record Analytics(
+            @JsonProperty("granularity") String granularity,
+            @JsonProperty("from") LocalDate from,
+            @JsonProperty("to") LocalDate to,
+            @JsonProperty("total_episodes_watched") int totalEpisodesWatched,
+            @JsonProperty("total_hours_watched") double totalHoursWatched,
+            @JsonProperty("current_streak") int currentStreak,
+            @JsonProperty("longest_streak") int longestStreak,
+            @JsonProperty("buckets") List<Bucket> buckets) {}
+
+    public record Bucket(
+            @JsonProperty("start") LocalDate start,
+            @JsonProperty("episodes_watched") int episodesWatched,
+            @JsonProperty("hours_watched") double hoursWatched,
+            @JsonProperty("rolling_average") double rollingAverage) {}
+
+    private static final int MAX_BUCKETS = 10_000;
+
+    private final DSLContext ctx;
+
+    @Autowired
+    public AnalyticsService(DSLContext ctx) {
+        this.ctx = ctx;
+    }
+
+    /**
+     * @param showId only count episodes of this show, or of all shows if null
+     * @param window the number of buckets in each rolling average
+     */
+    public Analytics analytics(
+            Granularity granularity,
+            @Nullable Integer showId,
+            @Nullable LocalDate from,
+            @Nullable LocalDate to,
+            int window) {
+        var today = Instant.now().atZone(ImmersionTrackerController.AUCKLAND_ZONE_ID).toLocalDate();
+        from = from != null ? from : ImmersionTrackerController.IMMERSION_START_DATE;
+        to = to != null ? to : today;
+        if (from.isAfter(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to");
+        }
+        if (window < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "window must be positive");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_BUCKETS) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "range must be less than " + MAX_BUCKETS + " days");
+        }
+
+        // the rollup is maintained in the sync transaction, so it includes today as well
+        var condition = DAILY_EPISODES.DAY.between(from, to);
+        if (showId != null) {
+            condition = condition.and(DAILY_EPISODES.SHOW_ID.eq(showId));
+        }
+        var episodesWatched = DSL.sum(DAILY_EPISODES.EPISODE_COUNT).cast(Integer.class);
+        var records =
+                ctx.select(DAILY_EPISODES.DAY, episodesWatched)
+                        .from(DAILY_EPISODES)
+                        .where(condition)
+                        .groupBy(DAILY_EPISODES.DAY)
+                        .fetch();
+
+        var episodesPerDay = new TreeMap<LocalDate, Integer>();
+        for (var record : records) {
+            episodesPerDay.put(record.value1(), record.value2());
+        }
+
+        return compute(episodesPerDay, granularity, from, to, window, today);
+    }
+
+    static Analytics compute(
+            SortedMap<LocalDate, Integer> episodesPerDay,
+            Granularity granularity,
+            LocalDate from,
+            LocalDate to,
+            int window,
+            LocalDate today) {
+        // sum the days into buckets, including empty buckets so the series is continuous
+        var episodesPerBucket = new TreeMap<LocalDate, Integer>();
+        for (var start = bucketStart(from, granularity);
+                !start.isAfter(to);
+                start = nextBucketStart(start, granularity)) {
+            episodesPerBucket.put(start, 0);
+        }
+        var total = 0;
+        for (var day : episodesPerDay.entrySet()) {
+            var start = bucketStart(day.getKey(), granularity);
+            episodesPerBucket.merge(start, day.getValue(), Integer::sum);
+            total += day.getValue();
+        }
+
+        // the first and last buckets may only be partly within the range. they are labelled with
+        // the part they cover and left out of the rolling averages, which they would drag down
+        var buckets = new ArrayList<Bucket>();
+        var counts = new ArrayList<>(episodesPerBucket.values());
+        var starts = new ArrayList<>(episodesPerBucket.keySet());
+        var complete = new ArrayList<Boolean>();
+        for (var start : starts) {
+            var end = nextBucketStart(start, granularity).minusDays(1);
+            complete.add(!start.isBefore(from) && !end.isAfter(to));
+        }
+        var windowSum = 0;
+        var windowBuckets = 0;
+        for (var i = 0; i < counts.size(); i++) {
+            if (complete.get(i)) {
+                windowSum += counts.get(i);
+                windowBuckets++;
+            }
+            if (i >= window && complete.get(i - window)) {
+                windowSum -= counts.get(i - window);
+                windowBuckets--;
+            }
+
+            // a partial bucket with no complete bucket in its window can only average itself
+            var rollingAverage =
+                    windowBuckets > 0 ? (double) windowSum / windowBuckets : counts.get(i);
+            var start = starts.get(i).isBefore(from) ? from : starts.get(i);
+            var bucket = new Bucket(start, counts.get(i), hours(counts.get(i)), rollingAverage);
+            buckets.add(bucket);
+        }
+
+        // streaks of consecutive days with at least one episode
+        var longestStreak = 0;
+        var streak = 0;
+        LocalDate previous = null;
+        for (var day : episodesPerDay.entrySet()) {
+            if (day.getValue() <= 0) {
+                continue;
+            }
+            var consecutive = previous != null && previous.plusDays(1).equals(day.getKey());
+            streak = consecutive ? streak + 1 : 1;
+            longestStreak = Math.max(longestStreak, streak);
+            previous = day.getKey();
+        }
+
+        // the current streak is still alive if nothing has been watched yet today
+        var currentStreak = 0;
+        if (previous != null && !previous.isBefore(today.minusDays(1))) {
+            currentStreak = streak;
+        }
+
+        return new Analytics(
+                granularity.name().toLowerCase(),
+                from,
+                to,
+                total,
+                hours(total),
+                currentStreak,
+                longestStreak,
+                buckets);
+    }
+
+    private static LocalDate bucketStart(LocalDate day, Granularity granularity) {
+        return switch (granularity) {
+            case DAY -> day;
+            case WEEK -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> day.withDayOfMonth(1);
+        };
+    }
+
+    private static LocalDate nextBucketStart(LocalDate start, Granularity granularity) {
+        return switch (granularity) {
+            case DAY -> start.plusDays(1);
+            case WEEK -> start.plusWeeks(1);
+            case MONTH -> start.plusMonths(1);
+        };
+    }
+
+    private static double hours(int episodes) {
+        return episodes * ImmersionTrackerController.MINUTES_PER_EPISODE / 60.0;
+    }
+}
@@ -0,0 +1,223 @@
+package com.jordansimsmith.immersion.tracker;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import javax.imageio.ImageIO;
+
+/**
+ * Disk cache of show artwork, resized to a few fixed thumbnail sizes.
+ *
+ * <p>Thumbnails are addressed by the SHA-256 of the original artwork, so their contents never
+ * change and can be cached by clients forever. A small reference file maps each artwork url to the
+ * hash of its contents. The total size of the thumbnails is capped, evicting the least recently
+ * used first.
+ */
+public class ArtworkCache {
+    public enum Size {
+        SMALL(120),
+        MEDIUM(240),
+        LARGE(480);
+
+        private final int width;
+
+        Size(int width) {
+            this.width = width;
+        }
+
+        public int width() {
+            return width;
+        }
+    }
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final ArtworkSource source;
+    private final Path directory;
+    private final Path refs;
+    private final long maxBytes;
+    private final LinkedHashMap<Path, Long> thumbnails = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes = 0;
+
+    public ArtworkCache(ArtworkSource source, Path directory, long maxBytes) {
+        this.source = source;
+        this.directory = directory;
+        this.refs = directory.resolve("refs");
+        this.maxBytes = maxBytes;
+
+        try {
+            Files.createDirectories(refs);
+
+            // restore the recency order from the last access times
+            try (var files = Files.list(directory)) {
+                files.filter(file -> file.getFileName().toString().endsWith(".jpg"))
+                        .sorted(Comparator.comparing(ArtworkCache::lastModified))
+                        .forEach(file -> thumbnails.put(file, size(file)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (var bytes : thumbnails.values()) {
+            totalBytes += bytes;
+        }
+    }
+
+    /**
+     * Fetches and resizes the artwork if it is not cached yet.
+     *
+     * @return the content hash of the artwork, to look up its thumbnails with
+     */
+    public String put(String url) throws IOException {
+        var ref = refs.resolve(sha256(url.getBytes(StandardCharsets.UTF_8)));
+        var cached = cachedHash(ref);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        // fetch and resize without holding the lock, so cached thumbnails can still be served
+        var original = source.fetch(url);
+        var image = ImageIO.read(new ByteArrayInputStream(original));
+        if (image == null) {
+            throw new IOException("unsupported artwork format: " + url);
+        }
+
+        var hash = sha256(original);
+        var resized = new EnumMap<Size, byte[]>(Size.class);
+        for (var size : Size.values()) {
+            resized.put(size, resize(image, size.width()));
+        }
+
+        store(ref, hash, resized);
+        return hash;
+    }
+
+    /**
+     * @return the thumbnail file, if the artwork with this hash is cached
+     */
+    public synchronized Optional<Path> get(String hash, Size size) {
+        if (!HASH_PATTERN.matcher(hash).matches()) {
+            return Optional.empty();
+        }
+
+        var path = thumbnailPath(hash, size);
+        if (thumbnails.get(path) == null || !Files.exists(path)) {
+            return Optional.empty();
+        }
+
+        // remember the access across restarts, best effort
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // the file was evicted concurrently
+        }
+
+        return Optional.of(path);
+    }
+
+    private synchronized Optional<String> cachedHash(Path ref) throws IOException {
+        if (!Files.exists(ref)) {
+            return Optional.empty();
+        }
+
+        var hash = Files.readString(ref);
+        for (var size : Size.values()) {
+            if (!thumbnails.containsKey(thumbnailPath(hash, size))) {
+                return Optional.empty();
+            }
+        }
+
+        return Optional.of(hash);
+    }
+
+    private synchronized void store(Path ref, String hash, Map<Size, byte[]> resized)
+            throws IOException {
+        for (var thumbnail : resized.entrySet()) {
+            var path = thumbnailPath(hash, thumbnail.getKey());
+            var tmp = Files.createTempFile(directory, hash, ".tmp");
+            Files.write(tmp, thumbnail.getValue());
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+
+            var bytes = (long) thumbnail.getValue().length;
+            var previous = thumbnails.put(path, bytes);
+            totalBytes += bytes - (previous != null ? previous : 0);
+        }
+        Files.writeString(ref, hash);
+
+        // evict the least recently used thumbnails until back under the cap
+        var iterator = thumbnails.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            var eldest = iterator.next();
+            Files.deleteIfExists(eldest.getKey());
+            totalBytes -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private Path thumbnailPath(String hash, Size size) {
+        return directory.resolve(hash + "-" + size.name().toLowerCase() + ".jpg");
+    }
+
+    private static byte[] resize(BufferedImage image, int width) throws IOException {
+        // never upscale, and keep the aspect ratio
+        width = Math.min(width, image.getWidth());
+        var height = Math.max(1, image.getHeight() * width / image.getWidth());
+
+        // jpeg has no alpha channel, so draw onto an opaque image
+        var thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        var graphics = thumbnail.createGraphics();
+        graphics.setRenderingHint(
+                RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.setRenderingHint(
+                RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        graphics.drawImage(image, 0, 0, width, height, Color.white, null);
+        graphics.dispose();
+
+        try (var outputStream = new ByteArrayOutputStream()) {
+            ImageIO.write(thumbnail, "jpg", outputStream);
+            return outputStream.toByteArray();
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            var sha = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha.digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long size(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.jordansimsmith.immersion.tracker;
+
+import java.io.IOException;
+
+/** Where the {@link ArtworkCache} fetches original artwork from. */
+@FunctionalInterface
+public interface ArtworkSource {
+    byte[] fetch(String url) throws IOException;
+}
@@ -0,0 +1,170 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.DAILY_EPISODES;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Nullable;
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartUtils;
+import org.jfree.data.time.Day;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesCollection;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Renders the cumulative episodes watched chart, caching a bounded number of recently requested
+ * variants for the current {@link DataVersion}.
+ */
+@Component
+public class ChartRenderer {
+    public record Variant(
+            int width, int height, @Nullable LocalDate from, @Nullable LocalDate to) {}
+
+    private record Key(long version, Variant variant) {}
+
+    private final DSLContext ctx;
+    private final Map<Key, byte[]> cache;
+    private final Timer renderTimer;
+
+    @Autowired
+    public ChartRenderer(
+            DSLContext ctx,
+            MeterRegistry meterRegistry,
+            @Value("${immersion.tracker.chart.cache-size}") int cacheSize) {
+        this.ctx = ctx;
+        this.renderTimer =
+                Timer.builder("immersion.chart.render")
+                        .description("Time to query and render a chart missing from the cache")
+                        .publishPercentileHistogram()
+                        .register(meterRegistry);
+        this.cache =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Key, byte[]> eldest) {
+                        return size() > cacheSize;
+                    }
+                };
+    }
+
+    /**
+     * @param version the data version, read before calling so a concurrent sync can only cause a
+     *     newer chart to be cached under an older version
+     */
+    public byte[] render(long version, Variant variant) {
+        var key = new Key(version, variant);
+        synchronized (cache) {
+            var png = cache.get(key);
+            if (png != null) {
+                return png;
+            }
+        }
+
+        // render outside the lock, concurrent misses for the same key just render twice
+        var png = renderTimer.record(() -> render(variant));
+        synchronized (cache) {
+            cache.keySet().removeIf(k -> k.version() < version);
+            cache.put(key, png);
+        }
+
+        return png;
+    }
+
+    private byte[] render(Variant variant) {
+        var episodesWatched = DSL.sum(DAILY_EPISODES.EPISODE_COUNT).cast(Integer.class);
+
+        // episodes before the start of the chart still count towards the total
+        var initial = 0;
+        if (variant.from() != null) {
+            initial =
+                    ctx.select(DSL.coalesce(episodesWatched, 0))
+                            .from(DAILY_EPISODES)
+                            .where(DAILY_EPISODES.DAY.lt(variant.from()))
+                            .fetchOne(0, int.class);
+        }
+
+        var condition = DSL.noCondition();
+        if (variant.from() != null) {
+            condition = condition.and(DAILY_EPISODES.DAY.ge(variant.from()));
+        }
+        if (variant.to() != null) {
+            condition = condition.and(DAILY_EPISODES.DAY.le(variant.to()));
+        }
+        var records =
+                ctx.select(DAILY_EPISODES.DAY, episodesWatched)
+                        .from(DAILY_EPISODES)
+                        .where(condition)
+                        .groupBy(DAILY_EPISODES.DAY)
+                        .orderBy(DAILY_EPISODES.DAY.asc())
+                        .fetch();
+
+        var episodesPerDay = new TreeMap<LocalDate, Integer>();
+        for (var record : records) {
+            episodesPerDay.put(record.value1(), record.value2());
+        }
+
+        var start =
+                variant.from() != null
+                        ? variant.from()
+                        : ImmersionTrackerController.IMMERSION_START_DATE;
+        return renderPng(start, initial, episodesPerDay, variant.width(), variant.height());
+    }
+
+    /** Renders the cumulative sum of episodes per day, starting with the initial total. */
+    public static byte[] renderPng(
+            LocalDate start,
+            int initial,
+            SortedMap<LocalDate, Integer> episodesPerDay,
+            int width,
+            int height) {
+        var series = new TimeSeries("episodes");
+        if (!episodesPerDay.containsKey(start)) {
+            series.add(day(start), initial);
+        }
+        var sum = initial;
+        for (var episodes : episodesPerDay.entrySet()) {
+            sum += episodes.getValue();
+            series.add(day(episodes.getKey()), sum);
+        }
+        var dataset = new TimeSeriesCollection(series);
+
+        var chart =
+                ChartFactory.createTimeSeriesChart(
+                        "episodes watched over time",
+                        "time",
+                        "episodes watched",
+                        dataset,
+                        false,
+                        false,
+                        false);
+        var plot = chart.getXYPlot();
+        plot.setBackgroundPaint(Color.white);
+        plot.setDomainGridlinePaint(Color.white);
+        plot.setRangeGridlinePaint(Color.white);
+        plot.setOutlineVisible(false);
+
+        try (var outputStream = new ByteArrayOutputStream()) {
+            ChartUtils.writeChartAsPNG(outputStream, chart, width, height);
+            return outputStream.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Day day(LocalDate date) {
+        return new Day(date.getDayOfMonth(), date.getMonthValue(), date.getYear());
+    }
+}
@@ -0,0 +1,133 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.EPISODE;
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.SHOW;
+
+import jakarta.annotation.Nullable;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.zip.GZIPOutputStream;
+import org.jooq.CSVFormat;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.jooq.Result;
+import org.jooq.impl.DSL;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exports episodes as CSV one keyset page at a time, so memory use does not grow with the number of
+ * episodes and the first rows are sent before the whole export has been queried.
+ *
+ * <p>Each page is a separate query, so a connection is only held while fetching a page and never
+ * while waiting on a slow client. Rows are ordered by timestamp and then id, which is stable across
+ * pages, and episodes synced during the export are either included or not, but never twice.
+ */
+@Component
+public class CsvExporter {
+    private final DSLContext ctx;
+    private final int pageSize;
+
+    @Autowired
+    public CsvExporter(DSLContext ctx, @Value("${immersion.tracker.csv.page-size}") int pageSize) {
+        this.ctx = ctx;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @param since only export episodes watched after this time
+     * @param afterId only export episodes with a greater id, for incremental exports
+     */
+    public void export(
+            OutputStream outputStream,
+            boolean gzip,
+            @Nullable LocalDateTime since,
+            @Nullable Integer afterId) {
+        var condition = DSL.noCondition();
+        if (since != null) {
+            condition = condition.and(EPISODE.TIMESTAMP.gt(since));
+        }
+        if (afterId != null) {
+            condition = condition.and(EPISODE.ID.gt(afterId));
+        }
+        var filter = condition;
+
+        var pages =
+                new Iterator<Result<? extends Record>>() {
+                    @Nullable private Result<? extends Record> last;
+
+                    @Override
+                    public boolean hasNext() {
+                        return last == null || last.size() == pageSize;
+                    }
+
+                    @Override
+                    public Result<? extends Record> next() {
+                        // continue from the last row of the previous page
+                        var after = DSL.noCondition();
+                        if (last != null) {
+                            var row = last.get(last.size() - 1);
+                            after =
+                                    DSL.row(EPISODE.TIMESTAMP, EPISODE.ID)
+                                            .gt(row.get(EPISODE.TIMESTAMP), row.get(EPISODE.ID));
+                        }
+
+                        last =
+                                ctx.select(
+                                                EPISODE.ID,
+                                                EPISODE.FILE_NAME,
+                                                EPISODE.TIMESTAMP,
+                                                SHOW.ID.as("show_id"),
+                                                SHOW.FOLDER_NAME,
+                                                SHOW.TVDB_ID,
+                                                SHOW.TVDB_NAME,
+                                                SHOW.TVDB_IMAGE)
+                                        .from(EPISODE)
+                                        .leftJoin(SHOW)
+                                        .on(EPISODE.SHOW_ID.eq(SHOW.ID))
+                                        .where(filter)
+                                        .and(after)
+                                        .orderBy(EPISODE.TIMESTAMP.asc(), EPISODE.ID.asc())
+                                        .limit(pageSize)
+                                        .fetch();
+                        return last;
+                    }
+                };
+        write(pages, outputStream, gzip);
+    }
+
+    /**
+     * Writes the pages as CSV with a single header row, flushing after every page. There must be at
+     * least one page, which may be empty.
+     */
+    public static void write(
+            Iterator<? extends Result<? extends Record>> pages,
+            OutputStream outputStream,
+            boolean gzip) {
+        try {
+            var stream = gzip ? new GZIPOutputStream(outputStream, true) : outputStream;
+            var writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+
+            var format = new CSVFormat().header(true);
+            do {
+                pages.next().formatCSV(writer, format);
+                writer.flush();
+                format = format.header(false);
+            } while (pages.hasNext());
+
+            if (stream instanceof GZIPOutputStream gzipStream) {
+                gzipStream.finish();
+            }
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.jordansimsmith.immersion.tracker;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import org.springframework.stereotype.Component;
+
+/**
+ * Version of the watched episode data, bumped after every sync that adds episodes. Used to key
+ * caches and to validate conditional requests.
+ *
+ * <p>The version lives in memory, so the entity tag includes the startup time to never match a tag
+ * handed out by a previous run of the server.
+ */
+@Component
+public class DataVersion {
+    public record Snapshot(long version, Instant lastModified, String etag) {}
+
+    private final long epoch = Instant.now().toEpochMilli();
+
+    private Snapshot current = snapshot(0);
+
+    public synchronized Snapshot current() {
+        return current;
+    }
+
+    /** Must only be called once the new data has been committed. */
+    public synchronized void bump() {
+        current = snapshot(current.version() + 1);
+    }
+
+    private Snapshot snapshot(long version) {
+        return new Snapshot(
+                version,
+                Instant.now().truncatedTo(ChronoUnit.SECONDS),
+                "\"" + epoch + "-" + version + "\"");
+    }
+}
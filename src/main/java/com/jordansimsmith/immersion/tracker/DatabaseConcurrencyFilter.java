@@ -0,0 +1,193 @@
+package com.jordansimsmith.immersion.tracker;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Bounds the number of requests doing database work to the size of the connection pool. On virtual
+ * threads nothing else stops thousands of requests from queueing on the pool until they time out,
+ * so requests wait here in order instead and are turned away with a 503 if no connection frees up
+ * in time. Syncs may only use some of the permits, so slow syncs can't starve progress polls.
+ *
+ * <p>Only enabled with virtual threads, as the size of the platform thread pool already bounds the
+ * number of requests waiting on the connection pool.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class DatabaseConcurrencyFilter extends OncePerRequestFilter {
+    // endpoints which don't touch the database, spend most of their time calling tvdb, or only
+    // hold a connection while fetching each page however long the client takes to read them
+    private static final List<String> EXCLUDED_PATTERNS =
+            List.of(
+                    "/actuator/**",
+                    "/csv",
+                    "/images/**",
+                    "/shows/{id}",
+                    "/shows/{id}/image",
+                    "/sync/jobs/**");
+    // endpoints which answer conditional requests for unchanged data without touching the database
+    private static final List<String> CONDITIONAL_PATTERNS = List.of("/chart");
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final DataVersion dataVersion;
+    private final Semaphore permits;
+    private final Semaphore syncPermits;
+    private final Duration acquireTimeout;
+
+    @Autowired
+    public DatabaseConcurrencyFilter(
+            MeterRegistry meterRegistry,
+            DataVersion dataVersion,
+            DataSource dataSource,
+            @Value("${immersion.tracker.db.reserved-connections}") int reservedConnections,
+            @Value("${immersion.tracker.db.acquire-timeout}") Duration acquireTimeout)
+            throws SQLException {
+        this(
+                meterRegistry,
+                dataVersion,
+                dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize(),
+                reservedConnections,
+                acquireTimeout);
+    }
+
+    DatabaseConcurrencyFilter(
+            MeterRegistry meterRegistry,
+            DataVersion dataVersion,
+            int poolSize,
+            int reservedConnections,
+            Duration acquireTimeout) {
+        this.dataVersion = dataVersion;
+        this.permits = new Semaphore(poolSize, true);
+        this.syncPermits = new Semaphore(Math.max(1, poolSize - reservedConnections), true);
+        this.acquireTimeout = acquireTimeout;
+
+        Gauge.builder("immersion.db.limiter.waiting", permits, Semaphore::getQueueLength)
+                .description("Number of requests waiting for a database permit")
+                .register(meterRegistry);
+        Gauge.builder("immersion.db.limiter.available", permits, Semaphore::availablePermits)
+                .description("Number of unused database permits")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // queued syncs are written by a single thread, which needs no permit
+        if (isSync(request) && "true".equals(request.getParameter("async"))) {
+            return true;
+        }
+
+        var path = request.getRequestURI().substring(request.getContextPath().length());
+        for (var pattern : EXCLUDED_PATTERNS) {
+            if (PATH_MATCHER.match(pattern, path)) {
+                return true;
+            }
+        }
+
+        // revalidating clients get a 304 straight away if nothing has been synced since
+        var ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if ("GET".equals(request.getMethod())
+                && ifNoneMatch != null
+                && ifNoneMatch.contains(dataVersion.current().etag())) {
+            for (var pattern : CONDITIONAL_PATTERNS) {
+                if (PATH_MATCHER.match(pattern, path)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        var acquired = new Semaphore[2];
+        var count = 0;
+        try {
+            if (isSync(request)) {
+                if (!tryAcquire(syncPermits, response)) {
+                    return;
+                }
+                acquired[count++] = syncPermits;
+            }
+            if (!tryAcquire(permits, response)) {
+                return;
+            }
+            acquired[count++] = permits;
+
+            filterChain.doFilter(request, response);
+        } finally {
+            var release = new Releaser(acquired, count);
+            if (request.isAsyncStarted()) {
+                // streamed responses keep using the connection until the async request completes
+                request.getAsyncContext().addListener(release);
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    private boolean tryAcquire(Semaphore semaphore, HttpServletResponse response)
+            throws IOException {
+        try {
+            if (semaphore.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "database is busy");
+        return false;
+    }
+
+    private static boolean isSync(HttpServletRequest request) {
+        return "POST".equals(request.getMethod()) && request.getRequestURI().endsWith("/sync");
+    }
+
+    private record Releaser(Semaphore[] acquired, int count) implements AsyncListener, Runnable {
+        @Override
+        public void run() {
+            for (var i = 0; i < count; i++) {
+                acquired[i].release();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {}
+
+        @Override
+        public void onError(AsyncEvent event) {}
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {}
+    }
+}
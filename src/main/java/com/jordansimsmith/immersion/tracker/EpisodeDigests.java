@@ -0,0 +1,42 @@
+package com.jordansimsmith.immersion.tracker;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Hashes and order independent digests of episode file names.
+ *
+ * <p>An episode hashes to the first 8 bytes of the SHA-256 of its UTF-8 file name, which is stored
+ * with each episode so clients can ask which of their episodes the server is missing without
+ * uploading all of them. A set of episodes digests to the XOR of their hashes, which lets the
+ * digest of a show be updated incrementally as episodes are inserted. Both match the backfills in
+ * the {@code 7-add-show-digest.sql} and {@code 10-add-episode-file-hash.sql} migrations.
+ */
+public final class EpisodeDigests {
+    private EpisodeDigests() {}
+
+    public static long hash(String fileName) {
+        try {
+            var sha = MessageDigest.getInstance("SHA-256");
+            var bytes = sha.digest(fileName.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(bytes).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String format(long digest) {
+        return String.format("%016x", digest);
+    }
+
+    /** Parses a hash or digest written by {@link #format}. */
+    public static long parse(String digest) {
+        if (digest.length() != 16) {
+            throw new IllegalArgumentException("digest must be 16 hex digits: " + digest);
+        }
+        return HexFormat.fromHexDigitsToLong(digest);
+    }
+}
@@ -0,0 +1,291 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.DAILY_EPISODES;
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.EPISODE;
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.SHOW;
+
+import com.jordansimsmith.immersion.tracker.ImmersionTrackerController.SyncEpisodesRequest;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.Record2;
+import org.jooq.Result;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Synchronises batches of watched episodes with a constant number of set-based statements,
+ * regardless of the size of the batch.
+ *
+ * <p>Also keeps the episode count and {@link EpisodeDigests digest} of each show, and the daily
+ * episode counts, up to date.
+ */
+@Service
+public class EpisodeSyncService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EpisodeSyncService.class);
+    private static final int MAX_ATTEMPTS = 3;
+    private static final String DEADLOCK_DETECTED = "40P01";
+
+    /**
+     * Creates any missing shows and episodes in the batch, in a transaction of its own.
+     *
+     * @return the number of episodes that did not exist before
+     */
+    public int sync(DSLContext ctx, Collection<SyncEpisodesRequest> episodes) {
+        return transaction(ctx, txn -> insert(txn, episodes).size());
+    }
+
+    /**
+     * Like {@link #sync}, but returns the episodes that did not exist before rather than counting
+     * them, at the cost of one more query.
+     */
+    public Set<SyncEpisodesRequest> syncReturningAdded(
+            DSLContext ctx, Collection<SyncEpisodesRequest> episodes) {
+        return transaction(
+                ctx,
+                txn -> {
+                    var inserted = insert(txn, episodes);
+                    if (inserted.isEmpty()) {
+                        return Set.of();
+                    }
+
+                    var showIds = new HashSet<Integer>();
+                    for (var episode : inserted) {
+                        showIds.add(episode.value1());
+                    }
+                    var folderNames =
+                            txn.select(SHOW.ID, SHOW.FOLDER_NAME)
+                                    .from(SHOW)
+                                    .where(SHOW.ID.in(showIds))
+                                    .fetchMap(SHOW.ID, SHOW.FOLDER_NAME);
+
+                    var added = new HashSet<SyncEpisodesRequest>();
+                    for (var episode : inserted) {
+                        added.add(
+                                new SyncEpisodesRequest(
+                                        folderNames.get(episode.value1()), episode.value2()));
+                    }
+                    return added;
+                });
+    }
+
+    /**
+     * Finds which of the given episode hashes, grouped by folder name, the server doesn't have yet.
+     * A folder may hold any subset of the episodes of its show, so this checks each hash rather
+     * than comparing digests.
+     *
+     * @return the missing hashes of each folder which is missing any, in order
+     */
+    public Map<String, List<Long>> missing(DSLContext ctx, Map<String, Set<Long>> hashes) {
+        var size = 0;
+        for (var folderHashes : hashes.values()) {
+            size += folderHashes.size();
+        }
+        if (size == 0) {
+            return Map.of();
+        }
+
+        var folderNames = new String[size];
+        var fileHashes = new Long[size];
+        var i = 0;
+        for (var folder : hashes.entrySet()) {
+            for (var fileHash : folder.getValue()) {
+                folderNames[i] = Objects.requireNonNull(folder.getKey());
+                fileHashes[i] = Objects.requireNonNull(fileHash);
+                i++;
+            }
+        }
+
+        var batch =
+                DSL.table(
+                                "unnest({0}, {1})",
+                                DSL.val(folderNames, SQLDataType.CLOB.array()),
+                                DSL.val(fileHashes, SQLDataType.BIGINT.array()))
+                        .as("batch", "folder_name", "file_hash");
+        var batchFolderName = DSL.field(DSL.name("batch", "folder_name"), SQLDataType.CLOB);
+        var batchFileHash = DSL.field(DSL.name("batch", "file_hash"), SQLDataType.BIGINT);
+
+        // 64 bit hashes make a false match within one show vanishingly unlikely
+        var records =
+                ctx.select(batchFolderName, batchFileHash)
+                        .from(batch)
+                        .whereNotExists(
+                                DSL.selectOne()
+                                        .from(EPISODE)
+                                        .join(SHOW)
+                                        .on(SHOW.ID.eq(EPISODE.SHOW_ID))
+                                        .where(SHOW.FOLDER_NAME.eq(batchFolderName))
+                                        .and(EPISODE.FILE_HASH.eq(batchFileHash)))
+                        .orderBy(batchFolderName, batchFileHash)
+                        .fetch();
+
+        var missing = new LinkedHashMap<String, List<Long>>();
+        for (var record : records) {
+            missing.computeIfAbsent(record.value1(), k -> new ArrayList<>()).add(record.value2());
+        }
+        return missing;
+    }
+
+    /**
+     * Runs the sync in a transaction, retrying it if postgres aborts it to break a deadlock. Shows
+     * are locked in a fixed order so syncs shouldn't deadlock each other, but this keeps a sync
+     * from failing if one does.
+     */
+    private static <T> T transaction(DSLContext ctx, Function<DSLContext, T> sync) {
+        for (var attempt = 1; ; attempt++) {
+            try {
+                return ctx.transactionResult((Configuration txn) -> sync.apply(txn.dsl()));
+            } catch (RuntimeException e) {
+                if (attempt == MAX_ATTEMPTS || !isDeadlock(e)) {
+                    throw e;
+                }
+                LOGGER.warn("sync lost a deadlock, retrying", e);
+            }
+        }
+    }
+
+    private static boolean isDeadlock(RuntimeException e) {
+        // spring translates the error when running in the application, but not in plain jooq
+        return e instanceof DeadlockLoserDataAccessException
+                || (e instanceof DataAccessException dataAccessException
+                        && DEADLOCK_DETECTED.equals(dataAccessException.sqlState()));
+    }
+
+    private Result<Record2<Integer, String>> insert(
+            DSLContext txn, Collection<SyncEpisodesRequest> episodes) {
+        if (episodes.isEmpty()) {
+            return txn.newResult(EPISODE.SHOW_ID, EPISODE.FILE_NAME);
+        }
+
+        // dedupe the batch
+        var unique =
+                new TreeSet<SyncEpisodesRequest>(
+                        Comparator.comparing(SyncEpisodesRequest::folderName)
+                                .thenComparing(SyncEpisodesRequest::fileName));
+        unique.addAll(episodes);
+
+        var folderNames = new String[unique.size()];
+        var fileNames = new String[unique.size()];
+        var fileHashes = new Long[unique.size()];
+        var i = 0;
+        for (var episode : unique) {
+            folderNames[i] = Objects.requireNonNull(episode.folderName());
+            fileNames[i] = Objects.requireNonNull(episode.fileName());
+            fileHashes[i] = EpisodeDigests.hash(episode.fileName());
+            i++;
+        }
+
+        // bind the whole batch as three array parameters instead of one row per episode
+        var batch =
+                DSL.table(
+                                "unnest({0}, {1}, {2})",
+                                DSL.val(folderNames, SQLDataType.CLOB.array()),
+                                DSL.val(fileNames, SQLDataType.CLOB.array()),
+                                DSL.val(fileHashes, SQLDataType.BIGINT.array()))
+                        .as("batch", "folder_name", "file_name", "file_hash");
+        var batchFolderName = DSL.field(DSL.name("batch", "folder_name"), SQLDataType.CLOB);
+        var batchFileName = DSL.field(DSL.name("batch", "file_name"), SQLDataType.CLOB);
+        var batchFileHash = DSL.field(DSL.name("batch", "file_hash"), SQLDataType.BIGINT);
+
+        // create all shows that don't exist yet, in order so that concurrent syncs creating the
+        // same shows wait on each other in the same order
+        txn.insertInto(SHOW, SHOW.FOLDER_NAME)
+                .select(DSL.selectDistinct(batchFolderName).from(batch).orderBy(batchFolderName))
+                .onConflict(SHOW.FOLDER_NAME)
+                .doNothing()
+                .execute();
+
+        // lock every show in the batch up front and in id order, so concurrent syncs can't each
+        // hold a show the other needs while inserting episodes or updating the aggregates
+        txn.select(SHOW.ID)
+                .from(SHOW)
+                .where(SHOW.FOLDER_NAME.in(DSL.selectDistinct(batchFolderName).from(batch)))
+                .orderBy(SHOW.ID)
+                .forUpdate()
+                .execute();
+
+        // create all episodes that don't exist yet
+        var now =
+                Instant.now().atZone(ImmersionTrackerController.AUCKLAND_ZONE_ID).toLocalDateTime();
+        var inserted =
+                txn.insertInto(
+                                EPISODE,
+                                EPISODE.SHOW_ID,
+                                EPISODE.FILE_NAME,
+                                EPISODE.FILE_HASH,
+                                EPISODE.TIMESTAMP)
+                        .select(
+                                DSL.select(SHOW.ID, batchFileName, batchFileHash, DSL.val(now))
+                                        .from(batch)
+                                        .join(SHOW)
+                                        .on(SHOW.FOLDER_NAME.eq(batchFolderName)))
+                        .onConflict(EPISODE.SHOW_ID, EPISODE.FILE_NAME)
+                        .doNothing()
+                        .returningResult(EPISODE.SHOW_ID, EPISODE.FILE_NAME)
+                        .fetch();
+        if (inserted.isEmpty()) {
+            return inserted;
+        }
+
+        // fold the new episodes into the digest of each show
+        var digests = new TreeMap<Integer, long[]>();
+        for (var episode : inserted) {
+            var digest = digests.computeIfAbsent(episode.value1(), k -> new long[2]);
+            digest[0]++;
+            digest[1] ^= EpisodeDigests.hash(episode.value2());
+        }
+
+        var showIds = new Integer[digests.size()];
+        var counts = new Integer[digests.size()];
+        var hashes = new Long[digests.size()];
+        var j = 0;
+        for (var digest : digests.entrySet()) {
+            showIds[j] = digest.getKey();
+            counts[j] = (int) digest.getValue()[0];
+            hashes[j] = digest.getValue()[1];
+            j++;
+        }
+
+        var delta =
+                DSL.table(
+                                "unnest({0}, {1}, {2})",
+                                DSL.val(showIds, SQLDataType.INTEGER.array()),
+                                DSL.val(counts, SQLDataType.INTEGER.array()),
+                                DSL.val(hashes, SQLDataType.BIGINT.array()))
+                        .as("delta", "show_id", "episode_count", "episode_digest");
+        var deltaShowId = DSL.field(DSL.name("delta", "show_id"), SQLDataType.INTEGER);
+        var deltaCount = DSL.field(DSL.name("delta", "episode_count"), SQLDataType.INTEGER);
+        var deltaDigest = DSL.field(DSL.name("delta", "episode_digest"), SQLDataType.BIGINT);
+
+        txn.update(SHOW)
+                .set(SHOW.EPISODE_COUNT, SHOW.EPISODE_COUNT.plus(deltaCount))
+                .set(SHOW.EPISODE_DIGEST, SHOW.EPISODE_DIGEST.bitXor(deltaDigest))
+                .from(delta)
+                .where(SHOW.ID.eq(deltaShowId))
+                .execute();
+
+        // every episode in the batch was watched today
+        txn.insertInto(
+                        DAILY_EPISODES,
+                        DAILY_EPISODES.DAY,
+                        DAILY_EPISODES.SHOW_ID,
+                        DAILY_EPISODES.EPISODE_COUNT)
+                .select(DSL.select(DSL.val(now.toLocalDate()), deltaShowId, deltaCount).from(delta))
+                .onConflict(DAILY_EPISODES.DAY, DAILY_EPISODES.SHOW_ID)
+                .doUpdate()
+                .set(
+                        DAILY_EPISODES.EPISODE_COUNT,
+                        DAILY_EPISODES.EPISODE_COUNT.plus(
+                                DSL.excluded(DAILY_EPISODES.EPISODE_COUNT)))
+                .execute();
+
+        return inserted;
+    }
+}
@@ -1,5 +1,13 @@
 package com.jordansimsmith.immersion.tracker;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+import org.jooq.ExecuteListenerProvider;
+import org.jooq.impl.DefaultExecuteListenerProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -13,10 +21,14 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
 
 @Configuration
 @EnableWebSecurity
 public class ImmersionTrackerConfiguration {
+    private static final int MAX_ARTWORK_BYTES = 16 * 1024 * 1024;
+
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
@@ -37,10 +49,59 @@ public class ImmersionTrackerConfiguration {
         return manager;
     }
 
+    @Bean
+    public SyncEpisodesReader syncEpisodesReader(
+            ObjectMapper objectMapper,
+            @Value("${immersion.tracker.sync.chunk-size}") int chunkSize) {
+        return new SyncEpisodesReader(objectMapper, chunkSize);
+    }
+
+    @Bean
+    public ArtworkSource artworkSource() {
+        var client =
+                WebClient.builder()
+                        .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(MAX_ARTWORK_BYTES))
+                        .build();
+        return url ->
+                Objects.requireNonNull(
+                        client.get().uri(url).retrieve().bodyToMono(byte[].class).block());
+    }
+
+    @Bean
+    public ArtworkCache artworkCache(
+            ArtworkSource artworkSource,
+            @Value("${immersion.tracker.artwork.directory}") Path directory,
+            @Value("${immersion.tracker.artwork.max-size}") DataSize maxSize) {
+        return new ArtworkCache(artworkSource, directory, maxSize.toBytes());
+    }
+
+    @Bean
+    public ExecuteListenerProvider queryMetricsListenerProvider(
+            MeterRegistry meterRegistry,
+            @Value("${immersion.tracker.db.slow-query-threshold}") Duration slowQueryThreshold) {
+        return new DefaultExecuteListenerProvider(
+                new QueryMetricsListener(meterRegistry, slowQueryThreshold));
+    }
+
+    /** Shared by the synchronous sync endpoint and the sync queue, which both add episodes. */
+    @Bean
+    public DistributionSummary syncEpisodesAdded(MeterRegistry meterRegistry) {
+        return DistributionSummary.builder("immersion.sync.episodes.added")
+                .description("Number of new episodes added by each sync request")
+                .baseUnit("episodes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http.csrf(AbstractHttpConfigurer::disable)
-                .securityMatcher("/sync", "/shows/{id}")
+                .securityMatcher(
+                        "/sync",
+                        "/sync/**",
+                        "/shows/{id}",
+                        "/progress/verify",
+                        "/actuator/prometheus")
                 .authorizeHttpRequests(authorize -> authorize.anyRequest().authenticated())
                 .httpBasic(Customizer.withDefaults());
 
@@ -1,36 +1,38 @@
 package com.jordansimsmith.immersion.tracker;
 
-import static com.jordansimsmith.immersion.tracker.jooq.Tables.EPISODE;
 import static com.jordansimsmith.immersion.tracker.jooq.Tables.SHOW;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.Nullable;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import java.awt.*;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.time.Instant;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
-import org.jfree.chart.ChartFactory;
-import org.jfree.chart.ChartUtils;
-import org.jfree.data.time.Day;
-import org.jfree.data.time.TimeSeries;
-import org.jfree.data.time.TimeSeriesCollection;
-import org.jooq.Configuration;
 import org.jooq.DSLContext;
-import org.jooq.DatePart;
-import org.jooq.impl.DSL;
+import org.jooq.Query;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.reactive.function.BodyInserters;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 public class ImmersionTrackerController {
@@ -40,246 +42,438 @@ public class ImmersionTrackerController {
             @JsonProperty("episodes_watched_today") int episodesWatchedToday,
             @JsonProperty("shows") List<ShowProgress> shows) {}
 
+    public record ProgressConsistencyResponse(
+            @JsonProperty("consistent") boolean consistent,
+            @JsonProperty("mismatches") List<String> mismatches) {}
+
     public record ShowProgress(
             @Nullable @JsonProperty("name") String name,
             @JsonProperty("episodes_watched") int episodesWatched) {}
 
-    public record Show(
-            @JsonProperty("id") int id,
-            @JsonProperty("folder_name") String folderName,
-            @Nullable @JsonProperty("tvdb_id") Integer tvdbId,
-            @Nullable @JsonProperty("tvdb_name") String tvdbName,
-            @Nullable @JsonProperty("tvdb_image") String tvdbImage) {}
-
     public record UpdateShowRequest(@JsonProperty("tvdb_id") int tvdbId) {}
 
+    public record UpdateShowsRequest(
+            @JsonProperty("id") int id, @JsonProperty("tvdb_id") int tvdbId) {}
+
+    public record UpdateShowsResponse(
+            @JsonProperty("shows_updated") int showsUpdated,
+            @JsonProperty("failed") List<UpdateShowsRequest> failed) {}
+
     public record SyncEpisodesRequest(
             @JsonProperty("folder_name") String folderName,
             @JsonProperty("file_name") String fileName) {}
 
     public record SyncEpisodesResponse(@JsonProperty("episodes_added") int episodesAdded) {}
 
-    private static final int MINUTES_PER_EPISODE = 20;
-    private static final ZoneId AUCKLAND_ZONE_ID = ZoneId.of("Pacific/Auckland");
+    public record EpisodeHashes(
+            @JsonProperty("folder_name") String folderName,
+            @JsonProperty("hashes") List<String> hashes) {}
+
+    static final int MINUTES_PER_EPISODE = 20;
+    static final ZoneId AUCKLAND_ZONE_ID = ZoneId.of("Pacific/Auckland");
+    static final LocalDate IMMERSION_START_DATE = LocalDate.of(2023, 5, 7);
+    private static final int MIN_CHART_SIZE = 100;
+    private static final int MAX_CHART_SIZE = 2000;
+    private static final int MAX_MISSING_HASHES = 100_000;
+    private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
 
-    private final String tvdbApiKey;
     private final DSLContext ctx;
+    private final EpisodeSyncService episodeSyncService;
+    private final SyncEpisodesReader syncEpisodesReader;
+    private final ProgressConsistencyChecker progressConsistencyChecker;
+    private final DataVersion dataVersion;
+    private final ChartRenderer chartRenderer;
+    private final CsvExporter csvExporter;
+    private final TvdbClient tvdbClient;
+    private final ArtworkCache artworkCache;
+    private final ListingService listingService;
+    private final AnalyticsService analyticsService;
+    private final ProgressService progressService;
+    private final SyncIngestionQueue syncIngestionQueue;
+    private final DistributionSummary syncBatchSize;
+    private final DistributionSummary syncEpisodesAdded;
 
     @Autowired
-    public ImmersionTrackerController(@Value("${tvdb.api.key}") String tvdbApiKey, DSLContext ctx) {
-        this.tvdbApiKey = Objects.requireNonNull(tvdbApiKey);
+    public ImmersionTrackerController(
+            DSLContext ctx,
+            EpisodeSyncService episodeSyncService,
+            SyncEpisodesReader syncEpisodesReader,
+            ProgressConsistencyChecker progressConsistencyChecker,
+            DataVersion dataVersion,
+            ChartRenderer chartRenderer,
+            CsvExporter csvExporter,
+            TvdbClient tvdbClient,
+            ArtworkCache artworkCache,
+            ListingService listingService,
+            AnalyticsService analyticsService,
+            ProgressService progressService,
+            SyncIngestionQueue syncIngestionQueue,
+            MeterRegistry meterRegistry,
+            DistributionSummary syncEpisodesAdded) {
         this.ctx = ctx;
+        this.episodeSyncService = episodeSyncService;
+        this.syncEpisodesReader = syncEpisodesReader;
+        this.progressConsistencyChecker = progressConsistencyChecker;
+        this.dataVersion = dataVersion;
+        this.chartRenderer = chartRenderer;
+        this.csvExporter = csvExporter;
+        this.tvdbClient = tvdbClient;
+        this.artworkCache = artworkCache;
+        this.listingService = listingService;
+        this.analyticsService = analyticsService;
+        this.progressService = progressService;
+        this.syncIngestionQueue = syncIngestionQueue;
+        this.syncEpisodesAdded = syncEpisodesAdded;
+        this.syncBatchSize =
+                DistributionSummary.builder("immersion.sync.batch.size")
+                        .description("Number of episodes in each sync request")
+                        .baseUnit("episodes")
+                        .publishPercentileHistogram()
+                        .register(meterRegistry);
     }
 
     @GetMapping("/progress")
     public ProgressResponse progress() {
-        var records =
-                ctx.select(SHOW.TVDB_ID, SHOW.TVDB_NAME, DSL.count())
-                        .from(SHOW)
-                        .join(EPISODE)
-                        .on(SHOW.ID.eq(EPISODE.SHOW_ID))
-                        .groupBy(SHOW.TVDB_ID, SHOW.TVDB_NAME)
-                        .orderBy(DSL.count().desc())
-                        .fetch();
-
-        var totalEpisodesWatched = 0;
-        for (var record : records) {
-            totalEpisodesWatched += record.value3();
-        }
-        int totalHoursWatched = totalEpisodesWatched * MINUTES_PER_EPISODE / 60;
-
-        var shows = new ArrayList<ShowProgress>();
-        for (var record : records) {
-            var show = new ShowProgress(record.value2(), record.value3());
-            shows.add(show);
-        }
-
-        var now = Instant.now().atZone(AUCKLAND_ZONE_ID).toLocalDateTime();
-
-        var episodesWatchedToday =
-                ctx.fetchCount(
-                        EPISODE,
-                        DSL.trunc(EPISODE.TIMESTAMP, DatePart.DAY)
-                                .eq(DSL.trunc(now, DatePart.DAY)));
+        return progressService.progress();
+    }
 
-        return new ProgressResponse(
-                totalEpisodesWatched, totalHoursWatched, episodesWatchedToday, shows);
+    @GetMapping("/progress/verify")
+    public ProgressConsistencyResponse verifyProgress() {
+        var mismatches = progressConsistencyChecker.check();
+        return new ProgressConsistencyResponse(mismatches.isEmpty(), mismatches);
     }
 
     @GetMapping("/shows")
-    public List<Show> listShows() {
-        var records = ctx.selectFrom(SHOW).fetch();
-
-        var shows = new ArrayList<Show>();
-        for (var record : records) {
-            var show =
-                    new Show(
-                            record.getId(),
-                            record.getFolderName(),
-                            record.getTvdbId(),
-                            record.getTvdbName(),
-                            record.getTvdbImage());
-            shows.add(show);
+    public ListingService.Page listShows(
+            @RequestParam(value = "limit", defaultValue = "100") int limit,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "tvdb", required = false) String tvdb,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = ISO.DATE)
+                    LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = ISO.DATE)
+                    LocalDate to,
+            @RequestParam(value = "fields", defaultValue = "") List<String> fields) {
+        ListingService.TvdbStatus tvdbStatus = null;
+        if (tvdb != null) {
+            try {
+                tvdbStatus = ListingService.TvdbStatus.valueOf(tvdb.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST, "tvdb must be mapped or unmapped");
+            }
         }
 
-        return shows;
+        return listingService.listShows(limit, cursor, tvdbStatus, from, to, fields);
+    }
+
+    @GetMapping("/shows/{id}/episodes")
+    public ListingService.Page listShowEpisodes(
+            @PathVariable(value = "id") int id,
+            @RequestParam(value = "limit", defaultValue = "100") int limit,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = ISO.DATE)
+                    LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = ISO.DATE)
+                    LocalDate to,
+            @RequestParam(value = "fields", defaultValue = "") List<String> fields) {
+        return listingService.listEpisodes(limit, cursor, id, from, to, fields);
+    }
+
+    @GetMapping("/episodes")
+    public ListingService.Page listEpisodes(
+            @RequestParam(value = "limit", defaultValue = "100") int limit,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = ISO.DATE)
+                    LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = ISO.DATE)
+                    LocalDate to,
+            @RequestParam(value = "fields", defaultValue = "") List<String> fields) {
+        return listingService.listEpisodes(limit, cursor, null, from, to, fields);
     }
 
     @PutMapping("/shows/{id}")
     public void updateShow(@PathVariable(value = "id") int id, @RequestBody UpdateShowRequest req) {
-        var client =
-                WebClient.builder()
-                        .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                        .baseUrl("https://api4.thetvdb.com/v4")
-                        .build();
-
-        // authenticate and get a bearer token
-        var login =
-                client.post()
-                        .uri("/login")
-                        .body(BodyInserters.fromValue(Map.of("apikey", tvdbApiKey)))
-                        .accept(MediaType.APPLICATION_JSON)
-                        .retrieve()
-                        .bodyToMono(JsonNode.class)
-                        .block();
-        Objects.requireNonNull(login);
-        if (!"success".equals(login.path("status").asText())) {
-            throw new RuntimeException("failed to login to tvdb api");
-        }
-        var token = login.path("data").path("token").asText();
-        Objects.requireNonNull(token);
-
-        // request series information
-        var series =
-                client.get()
-                        .uri("/series/" + req.tvdbId)
-                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
-                        .accept(MediaType.APPLICATION_JSON)
-                        .retrieve()
-                        .bodyToMono(JsonNode.class)
-                        .block();
-        Objects.requireNonNull(series);
-        if (!"success".equals(series.path("status").asText())) {
-            throw new RuntimeException("failed to retrieve series from tvdb api");
-        }
-        var name = series.path("data").path("name").asText(null);
-        var image = series.path("data").path("image").asText(null);
+        var series = tvdbClient.getSeries(req.tvdbId());
 
         // update the show record
         ctx.update(SHOW)
-                .set(SHOW.TVDB_ID, req.tvdbId())
-                .set(SHOW.TVDB_NAME, name)
-                .set(SHOW.TVDB_IMAGE, image)
+                .set(SHOW.TVDB_ID, series.id())
+                .set(SHOW.TVDB_NAME, series.name())
+                .set(SHOW.TVDB_IMAGE, series.image())
                 .where(SHOW.ID.eq(id))
                 .limit(1)
                 .execute();
     }
 
+    @PutMapping("/shows/batch")
+    public UpdateShowsResponse updateShows(@RequestBody List<UpdateShowsRequest> req) {
+        var tvdbIds = new ArrayList<Integer>();
+        for (var update : req) {
+            tvdbIds.add(update.tvdbId());
+        }
+        var series = tvdbClient.getSeries(tvdbIds);
+
+        // update all the show records that resolved at once, and report the rest
+        var queries = new ArrayList<Query>();
+        var failed = new ArrayList<UpdateShowsRequest>();
+        for (var update : req) {
+            var tvdbSeries = series.get(update.tvdbId());
+            if (tvdbSeries == null) {
+                failed.add(update);
+                continue;
+            }
+
+            var query =
+                    ctx.update(SHOW)
+                            .set(SHOW.TVDB_ID, tvdbSeries.id())
+                            .set(SHOW.TVDB_NAME, tvdbSeries.name())
+                            .set(SHOW.TVDB_IMAGE, tvdbSeries.image())
+                            .where(SHOW.ID.eq(update.id()));
+            queries.add(query);
+        }
+        if (!queries.isEmpty()) {
+            ctx.batch(queries).execute();
+        }
+
+        return new UpdateShowsResponse(queries.size(), failed);
+    }
+
+    @GetMapping("/shows/{id}/image")
+    public ResponseEntity<Void> showImage(
+            @PathVariable(value = "id") int id,
+            @RequestParam(value = "size", defaultValue = "medium") String size)
+            throws IOException {
+        var artworkSize = artworkSize(size);
+        var image =
+                ctx.select(SHOW.TVDB_IMAGE)
+                        .from(SHOW)
+                        .where(SHOW.ID.eq(id))
+                        .fetchOne(SHOW.TVDB_IMAGE);
+        if (image == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "show has no image");
+        }
+
+        // redirect to the content addressed thumbnail, the show's image may change
+        var hash = artworkCache.put(image);
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .location(URI.create("/images/" + hash + "/" + artworkSize.name().toLowerCase()))
+                .cacheControl(CacheControl.noCache())
+                .build();
+    }
+
+    @GetMapping("/images/{hash}/{size}")
+    public void image(
+            @PathVariable(value = "hash") String hash,
+            @PathVariable(value = "size") String size,
+            HttpServletRequest req,
+            HttpServletResponse res)
+            throws IOException {
+        var path =
+                artworkCache
+                        .get(hash, artworkSize(size))
+                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        var length = Files.size(path);
+
+        res.setContentType(MediaType.IMAGE_JPEG_VALUE);
+        res.setContentLengthLong(length);
+        res.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable");
+
+        // let tomcat send the file straight from the page cache to the socket
+        if (Boolean.TRUE.equals(req.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+            req.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, path.toAbsolutePath().toString());
+            req.setAttribute(SENDFILE_START_ATTRIBUTE, 0L);
+            req.setAttribute(SENDFILE_END_ATTRIBUTE, length);
+            return;
+        }
+
+        try (var channel = FileChannel.open(path)) {
+            channel.transferTo(0, length, Channels.newChannel(res.getOutputStream()));
+        }
+    }
+
     @GetMapping(value = "/chart", produces = MediaType.IMAGE_PNG_VALUE)
-    public byte[] chart(HttpServletResponse res) throws IOException {
-        var year = DSL.extract(EPISODE.TIMESTAMP, DatePart.YEAR).as("year");
-        var month = DSL.extract(EPISODE.TIMESTAMP, DatePart.MONTH).as("month");
-        var day = DSL.extract(EPISODE.TIMESTAMP, DatePart.DAY).as("day");
-        var episodesPerMonth =
-                ctx.select(year, month, day, DSL.count().as("episodes_watched"))
-                        .from(EPISODE)
-                        .groupBy(year, month, day)
-                        .orderBy(year.asc(), month.asc(), day.asc())
-                        .fetch();
-
-        var series = new TimeSeries("episodes");
-        series.add(new Day(7, 5, 2023), 0); // immersion start date
-        var sum = 0;
-        for (var episodes : episodesPerMonth) {
-            sum += episodes.value4();
-            series.add(new Day(episodes.value3(), episodes.value2(), episodes.value1()), sum);
+    public byte[] chart(
+            @RequestParam(value = "width", defaultValue = "800") int width,
+            @RequestParam(value = "height", defaultValue = "600") int height,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = ISO.DATE)
+                    LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = ISO.DATE)
+                    LocalDate to,
+            WebRequest req,
+            HttpServletResponse res) {
+        if (width < MIN_CHART_SIZE
+                || width > MAX_CHART_SIZE
+                || height < MIN_CHART_SIZE
+                || height > MAX_CHART_SIZE) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST,
+                    String.format(
+                            "chart dimensions must be between %d and %d",
+                            MIN_CHART_SIZE, MAX_CHART_SIZE));
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to");
         }
-        var dataset = new TimeSeriesCollection(series);
-
-        var chart =
-                ChartFactory.createTimeSeriesChart(
-                        "episodes watched over time",
-                        "time",
-                        "episodes watched",
-                        dataset,
-                        false,
-                        false,
-                        false);
-        var plot = chart.getXYPlot();
-        plot.setBackgroundPaint(Color.white);
-        plot.setDomainGridlinePaint(Color.white);
-        plot.setRangeGridlinePaint(Color.white);
-        plot.setOutlineVisible(false);
 
+        // clients revalidate on every request, unchanged charts are not rendered at all
         res.setHeader("Cache-Control", "no-cache");
+        var version = dataVersion.current();
+        if (req.checkNotModified(version.etag(), version.lastModified().toEpochMilli())) {
+            return null;
+        }
 
-        try (var outputStream = new ByteArrayOutputStream()) {
-            ChartUtils.writeChartAsPNG(outputStream, chart, 800, 600);
-            return outputStream.toByteArray();
+        return chartRenderer.render(
+                version.version(), new ChartRenderer.Variant(width, height, from, to));
+    }
+
+    @GetMapping("/analytics")
+    public AnalyticsService.Analytics analytics(
+            @RequestParam(value = "granularity", defaultValue = "day") String granularity,
+            @RequestParam(value = "show_id", required = false) Integer showId,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = ISO.DATE)
+                    LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = ISO.DATE)
+                    LocalDate to,
+            @RequestParam(value = "window", defaultValue = "7") int window) {
+        AnalyticsService.Granularity bucketGranularity;
+        try {
+            bucketGranularity = AnalyticsService.Granularity.valueOf(granularity.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "granularity must be day, week or month");
         }
+
+        return analyticsService.analytics(bucketGranularity, showId, from, to, window);
     }
 
     @GetMapping(value = "/csv", produces = "text/csv")
-    public String csv() {
-        return ctx.select(
-                        EPISODE.ID,
-                        EPISODE.FILE_NAME,
-                        EPISODE.TIMESTAMP,
-                        SHOW.ID.as("show_id"),
-                        SHOW.FOLDER_NAME,
-                        SHOW.TVDB_ID,
-                        SHOW.TVDB_NAME,
-                        SHOW.TVDB_IMAGE)
-                .from(EPISODE)
-                .leftJoin(SHOW)
-                .on(EPISODE.SHOW_ID.eq(SHOW.ID))
-                .orderBy(EPISODE.TIMESTAMP.asc(), EPISODE.ID.asc())
-                .fetch()
-                .formatCSV();
+    public ResponseEntity<StreamingResponseBody> csv(
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+            @RequestParam(value = "since", required = false) @DateTimeFormat(iso = ISO.DATE_TIME)
+                    LocalDateTime since,
+            @RequestParam(value = "after_id", required = false) Integer afterId) {
+        var res =
+                ResponseEntity.ok().contentType(MediaType.parseMediaType("text/csv;charset=UTF-8"));
+        if (gzip) {
+            res.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        return res.body(outputStream -> csvExporter.export(outputStream, gzip, since, afterId));
     }
 
-    @PostMapping("/sync")
-    public SyncEpisodesResponse syncEpisodes(@RequestBody List<SyncEpisodesRequest> req) {
+    @PostMapping(
+            value = "/sync",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public SyncEpisodesResponse syncEpisodes(HttpServletRequest req) throws IOException {
+        // each chunk is committed on its own, so a sync never holds its show locks for long. a
+        // sync which fails part way can just be retried, as episodes that exist are skipped
         var episodesAdded = new AtomicInteger();
-        ctx.transaction(
-                (Configuration txn) -> {
-                    for (var episodeMessage : req) {
-                        var now = Instant.now().atZone(AUCKLAND_ZONE_ID).toLocalDateTime();
-
-                        // check if the show already exists
-                        var show =
-                                txn.dsl()
-                                        .selectFrom(SHOW)
-                                        .where(SHOW.FOLDER_NAME.eq(episodeMessage.folderName()))
-                                        .fetchAny();
-
-                        // create the show if it doesn't exist
-                        if (show == null) {
-                            show = txn.dsl().newRecord(SHOW);
-                            show.setFolderName(episodeMessage.folderName());
-                            show.insert();
-                        }
-
-                        // check if the episode exists already
-                        var episode =
-                                txn.dsl()
-                                        .selectFrom(EPISODE)
-                                        .where(EPISODE.SHOW_ID.eq(show.getId()))
-                                        .and(EPISODE.FILE_NAME.eq(episodeMessage.fileName()))
-                                        .fetchAny();
-
-                        // create the episode if it doesn't exist
-                        if (episode == null) {
-                            episode = txn.dsl().newRecord(EPISODE);
-                            episode.setShowId(show.getId());
-                            episode.setFileName(episodeMessage.fileName());
-                            episode.setTimestamp(now);
-                            episode.insert();
-                            episodesAdded.getAndIncrement();
-                        }
+        int batchSize;
+        try {
+            batchSize =
+                    syncEpisodesReader.read(
+                            req.getInputStream(),
+                            chunk -> episodesAdded.addAndGet(episodeSyncService.sync(ctx, chunk)));
+        } finally {
+            if (episodesAdded.get() > 0) {
+                dataVersion.bump();
+            }
+        }
+
+        syncBatchSize.record(batchSize);
+        syncEpisodesAdded.record(episodesAdded.get());
+
+        return new SyncEpisodesResponse(episodesAdded.get());
+    }
+
+    @PostMapping(
+            value = "/sync",
+            params = "async=true",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<SyncIngestionQueue.Job> syncEpisodesAsync(HttpServletRequest req)
+            throws IOException {
+        // validate the whole payload before queueing any of it
+        var episodes = new ArrayList<SyncEpisodesRequest>();
+        syncEpisodesReader.read(
+                req.getInputStream(),
+                chunk -> {
+                    if (episodes.size() + chunk.size() > syncIngestionQueue.capacity()) {
+                        throw new ResponseStatusException(
+                                HttpStatus.PAYLOAD_TOO_LARGE,
+                                "too many episodes to queue, sync without async instead");
                     }
+                    episodes.addAll(chunk);
                 });
+        var job = syncIngestionQueue.submit(episodes);
 
-        return new SyncEpisodesResponse(episodesAdded.get());
+        syncBatchSize.record(episodes.size());
+
+        return ResponseEntity.accepted().location(URI.create("/sync/jobs/" + job.id())).body(job);
+    }
+
+    @GetMapping("/sync/jobs/{id}")
+    public SyncIngestionQueue.Job syncJob(@PathVariable(value = "id") UUID id) {
+        return syncIngestionQueue
+                .job(id)
+                .orElseThrow(
+                        () -> new ResponseStatusException(HttpStatus.NOT_FOUND, "job not found"));
+    }
+
+    @PostMapping("/sync/missing")
+    public List<EpisodeHashes> syncMissing(@RequestBody List<EpisodeHashes> req) {
+        var hashes = new HashMap<String, Set<Long>>();
+        var size = 0;
+        for (var folder : req) {
+            if (folder.folderName() == null || folder.hashes() == null) {
+                throw new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST, "folder_name and hashes are required");
+            }
+
+            var folderHashes = hashes.computeIfAbsent(folder.folderName(), k -> new HashSet<>());
+            for (var hash : folder.hashes()) {
+                folderHashes.add(episodeHash(hash));
+            }
+
+            size += folder.hashes().size();
+            if (size > MAX_MISSING_HASHES) {
+                throw new ResponseStatusException(
+                        HttpStatus.PAYLOAD_TOO_LARGE,
+                        "at most " + MAX_MISSING_HASHES + " hashes can be checked at once");
+            }
+        }
+
+        var missing = new ArrayList<EpisodeHashes>();
+        for (var folder : episodeSyncService.missing(ctx, hashes).entrySet()) {
+            var folderHashes = new ArrayList<String>();
+            for (var hash : folder.getValue()) {
+                folderHashes.add(EpisodeDigests.format(hash));
+            }
+            missing.add(new EpisodeHashes(folder.getKey(), folderHashes));
+        }
+
+        return missing;
+    }
+
+    private static long episodeHash(@Nullable String hash) {
+        if (hash == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "hashes must not be null");
+        }
+
+        try {
+            return EpisodeDigests.parse(hash);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid hash: " + hash);
+        }
+    }
+
+    private static ArtworkCache.Size artworkSize(String size) {
+        try {
+            return ArtworkCache.Size.valueOf(size.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "unknown size: " + size);
+        }
     }
 }
@@ -0,0 +1,246 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.EPISODE;
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.SHOW;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.impl.DSL;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Lists shows and episodes a page at a time. Pages continue from an opaque cursor holding the sort
+ * key of the last row rather than an offset, so every page costs the same index range scan no
+ * matter how deep into the table it is.
+ */
+@Service
+public class ListingService {
+    public record Page(
+            @JsonProperty("items") List<Map<String, Object>> items,
+            @Nullable @JsonProperty("next_cursor") String nextCursor) {}
+
+    public enum TvdbStatus {
+        MAPPED,
+        UNMAPPED
+    }
+
+    public static final int MAX_LIMIT = 1000;
+
+    private static final Map<String, Field<?>> SHOW_FIELDS =
+            fields(SHOW.ID, SHOW.FOLDER_NAME, SHOW.TVDB_ID, SHOW.TVDB_NAME, SHOW.TVDB_IMAGE);
+    private static final Map<String, Field<?>> EPISODE_FIELDS =
+            fields(EPISODE.ID, EPISODE.SHOW_ID, EPISODE.FILE_NAME, EPISODE.TIMESTAMP);
+
+    private final DSLContext ctx;
+
+    @Autowired
+    public ListingService(DSLContext ctx) {
+        this.ctx = ctx;
+    }
+
+    /**
+     * @param from only include shows with an episode watched on or after this day
+     * @param to only include shows with an episode watched on or before this day
+     * @param fields the fields to include, or all of them if empty
+     */
+    public Page listShows(
+            int limit,
+            @Nullable String cursor,
+            @Nullable TvdbStatus tvdbStatus,
+            @Nullable LocalDate from,
+            @Nullable LocalDate to,
+            List<String> fields) {
+        checkLimit(limit);
+        var projection = project(SHOW_FIELDS, fields);
+
+        var condition = DSL.noCondition();
+        if (cursor != null) {
+            condition = condition.and(SHOW.ID.gt(parseInt(decode(cursor, 1)[0])));
+        }
+        if (tvdbStatus == TvdbStatus.MAPPED) {
+            condition = condition.and(SHOW.TVDB_ID.isNotNull());
+        } else if (tvdbStatus == TvdbStatus.UNMAPPED) {
+            condition = condition.and(SHOW.TVDB_ID.isNull());
+        }
+        if (from != null || to != null) {
+            condition =
+                    condition.andExists(
+                            DSL.selectOne()
+                                    .from(EPISODE)
+                                    .where(EPISODE.SHOW_ID.eq(SHOW.ID))
+                                    .and(timestampBetween(from, to)));
+        }
+
+        var records =
+                ctx.select(SHOW_FIELDS.values())
+                        .from(SHOW)
+                        .where(condition)
+                        .orderBy(SHOW.ID.asc())
+                        .limit(limit + 1)
+                        .fetch();
+
+        String nextCursor = null;
+        if (records.size() > limit) {
+            records.remove(limit);
+            nextCursor = showCursor(records.get(limit - 1).get(SHOW.ID));
+        }
+
+        var items = new ArrayList<Map<String, Object>>();
+        for (var record : records) {
+            items.add(record.into(projection).intoMap());
+        }
+
+        return new Page(items, nextCursor);
+    }
+
+    /**
+     * @param showId only include episodes of this show, or of all shows if null
+     * @param from only include episodes watched on or after this day
+     * @param to only include episodes watched on or before this day
+     * @param fields the fields to include, or all of them if empty
+     */
+    public Page listEpisodes(
+            int limit,
+            @Nullable String cursor,
+            @Nullable Integer showId,
+            @Nullable LocalDate from,
+            @Nullable LocalDate to,
+            List<String> fields) {
+        checkLimit(limit);
+        var projection = project(EPISODE_FIELDS, fields);
+
+        var condition = timestampBetween(from, to);
+        if (cursor != null) {
+            var parts = decode(cursor, 2);
+            condition =
+                    condition.and(
+                            DSL.row(EPISODE.TIMESTAMP, EPISODE.ID)
+                                    .gt(parseTimestamp(parts[0]), parseInt(parts[1])));
+        }
+        if (showId != null) {
+            condition = condition.and(EPISODE.SHOW_ID.eq(showId));
+        }
+
+        var records =
+                ctx.select(EPISODE_FIELDS.values())
+                        .from(EPISODE)
+                        .where(condition)
+                        .orderBy(EPISODE.TIMESTAMP.asc(), EPISODE.ID.asc())
+                        .limit(limit + 1)
+                        .fetch();
+
+        String nextCursor = null;
+        if (records.size() > limit) {
+            records.remove(limit);
+            var last = records.get(limit - 1);
+            nextCursor = episodeCursor(last.get(EPISODE.TIMESTAMP), last.get(EPISODE.ID));
+        }
+
+        var items = new ArrayList<Map<String, Object>>();
+        for (var record : records) {
+            items.add(record.into(projection).intoMap());
+        }
+
+        return new Page(items, nextCursor);
+    }
+
+    static String showCursor(int id) {
+        return encode(id);
+    }
+
+    static String episodeCursor(LocalDateTime timestamp, int id) {
+        return encode(timestamp, id);
+    }
+
+    private static Condition timestampBetween(@Nullable LocalDate from, @Nullable LocalDate to) {
+        var condition = DSL.noCondition();
+        if (from != null) {
+            condition = condition.and(EPISODE.TIMESTAMP.ge(from.atStartOfDay()));
+        }
+        if (to != null) {
+            condition = condition.and(EPISODE.TIMESTAMP.lt(to.plusDays(1).atStartOfDay()));
+        }
+        return condition;
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_LIMIT);
+        }
+    }
+
+    private static Map<String, Field<?>> fields(Field<?>... fields) {
+        var map = new LinkedHashMap<String, Field<?>>();
+        for (var field : fields) {
+            map.put(field.getName(), field);
+        }
+        return map;
+    }
+
+    private static Field<?>[] project(Map<String, Field<?>> available, List<String> names) {
+        if (names.isEmpty()) {
+            return available.values().toArray(Field<?>[]::new);
+        }
+
+        var projection = new ArrayList<Field<?>>();
+        for (var name : names) {
+            var field = available.get(name);
+            if (field == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "unknown field: " + name);
+            }
+            projection.add(field);
+        }
+        return projection.toArray(Field<?>[]::new);
+    }
+
+    private static String encode(Object... parts) {
+        var joiner = new StringJoiner(",");
+        for (var part : parts) {
+            joiner.add(part.toString());
+        }
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(joiner.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decode(String cursor, int parts) {
+        try {
+            var decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            var split = decoded.split(",", -1);
+            if (split.length == parts) {
+                return split;
+            }
+        } catch (IllegalArgumentException e) {
+            // fall through to the bad request
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "malformed cursor");
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "malformed cursor");
+        }
+    }
+
+    private static LocalDateTime parseTimestamp(String value) {
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "malformed cursor");
+        }
+    }
+}
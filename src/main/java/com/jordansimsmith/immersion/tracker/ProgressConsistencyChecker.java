@@ -0,0 +1,116 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.DAILY_EPISODES;
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.EPISODE;
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.SHOW;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.jooq.Configuration;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the incrementally maintained progress aggregates from the episode table and reports any
+ * differences from the stored values.
+ */
+@Component
+public class ProgressConsistencyChecker {
+    private final DSLContext ctx;
+
+    @Autowired
+    public ProgressConsistencyChecker(DSLContext ctx) {
+        this.ctx = ctx;
+    }
+
+    /**
+     * @return a description of each inconsistency, empty if the aggregates are consistent
+     */
+    public List<String> check() {
+        var mismatches = new ArrayList<String>();
+        ctx.transaction(
+                (Configuration txn) -> {
+                    // compare against a single snapshot of the database
+                    txn.dsl().execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+                    mismatches.addAll(checkShows(txn.dsl()));
+                    mismatches.addAll(checkDailyEpisodes(txn.dsl()));
+                });
+
+        return mismatches;
+    }
+
+    private List<String> checkShows(DSLContext txn) {
+        var hash =
+                DSL.field(
+                        "('x' || left(encode(sha256(convert_to({0}, 'UTF8')), 'hex'), 16))"
+                                + "::bit(64)::bigint",
+                        SQLDataType.BIGINT, EPISODE.FILE_NAME);
+        var count = DSL.count(EPISODE.ID);
+        var digest = DSL.coalesce(DSL.field("bit_xor({0})", SQLDataType.BIGINT, hash), 0L);
+        var records =
+                txn.select(SHOW.ID, SHOW.EPISODE_COUNT, SHOW.EPISODE_DIGEST, count, digest)
+                        .from(SHOW)
+                        .leftJoin(EPISODE)
+                        .on(EPISODE.SHOW_ID.eq(SHOW.ID))
+                        .groupBy(SHOW.ID, SHOW.EPISODE_COUNT, SHOW.EPISODE_DIGEST)
+                        .having(SHOW.EPISODE_COUNT.ne(count).or(SHOW.EPISODE_DIGEST.ne(digest)))
+                        .orderBy(SHOW.ID.asc())
+                        .fetch();
+
+        var mismatches = new ArrayList<String>();
+        for (var record : records) {
+            mismatches.add(
+                    String.format(
+                            "show %d has %d episodes with digest %s but expected %d with digest %s",
+                            record.value1(),
+                            record.value2(),
+                            EpisodeDigests.format(record.value3()),
+                            record.value4(),
+                            EpisodeDigests.format(record.value5())));
+        }
+
+        return mismatches;
+    }
+
+    private List<String> checkDailyEpisodes(DSLContext txn) {
+        var day = EPISODE.TIMESTAMP.cast(LocalDate.class).as("day");
+        var count = DSL.count().as("episode_count");
+        var rebuilt =
+                txn.select(day, EPISODE.SHOW_ID, count)
+                        .from(EPISODE)
+                        .where(EPISODE.SHOW_ID.isNotNull())
+                        .groupBy(day, EPISODE.SHOW_ID)
+                        .asTable("rebuilt");
+        var rebuiltDay = rebuilt.field(day);
+        var rebuiltShowId = rebuilt.field(EPISODE.SHOW_ID);
+        var rebuiltCount = rebuilt.field(count);
+
+        var records =
+                txn.select(
+                                DSL.coalesce(DAILY_EPISODES.DAY, rebuiltDay),
+                                DSL.coalesce(DAILY_EPISODES.SHOW_ID, rebuiltShowId),
+                                DSL.coalesce(DAILY_EPISODES.EPISODE_COUNT, 0),
+                                DSL.coalesce(rebuiltCount, 0))
+                        .from(DAILY_EPISODES)
+                        .fullJoin(rebuilt)
+                        .on(DAILY_EPISODES.DAY.eq(rebuiltDay))
+                        .and(DAILY_EPISODES.SHOW_ID.eq(rebuiltShowId))
+                        .where(DAILY_EPISODES.EPISODE_COUNT.isDistinctFrom(rebuiltCount))
+                        .orderBy(DSL.inline(1), DSL.inline(2))
+                        .fetch();
+
+        var mismatches = new ArrayList<String>();
+        for (var record : records) {
+            mismatches.add(
+                    String.format(
+                            "show %d has %d episodes on %s but expected %d",
+                            record.value2(), record.value3(), record.value1(), record.value4()));
+        }
+
+        return mismatches;
+    }
+}
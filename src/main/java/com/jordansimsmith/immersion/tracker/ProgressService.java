@@ -0,0 +1,60 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.DAILY_EPISODES;
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.SHOW;
+
+import com.jordansimsmith.immersion.tracker.ImmersionTrackerController.ProgressResponse;
+import com.jordansimsmith.immersion.tracker.ImmersionTrackerController.ShowProgress;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/** Aggregates the episodes watched per show and today from the counts maintained by syncs. */
+@Service
+public class ProgressService {
+    private final DSLContext ctx;
+
+    @Autowired
+    public ProgressService(DSLContext ctx) {
+        this.ctx = ctx;
+    }
+
+    public ProgressResponse progress() {
+        var episodesWatched = DSL.sum(SHOW.EPISODE_COUNT).cast(Integer.class);
+        var records =
+                ctx.select(SHOW.TVDB_ID, SHOW.TVDB_NAME, episodesWatched)
+                        .from(SHOW)
+                        .where(SHOW.EPISODE_COUNT.gt(0))
+                        .groupBy(SHOW.TVDB_ID, SHOW.TVDB_NAME)
+                        .orderBy(episodesWatched.desc())
+                        .fetch();
+
+        var totalEpisodesWatched = 0;
+        for (var record : records) {
+            totalEpisodesWatched += record.value3();
+        }
+        int totalHoursWatched =
+                totalEpisodesWatched * ImmersionTrackerController.MINUTES_PER_EPISODE / 60;
+
+        var shows = new ArrayList<ShowProgress>();
+        for (var record : records) {
+            var show = new ShowProgress(record.value2(), record.value3());
+            shows.add(show);
+        }
+
+        var today = Instant.now().atZone(ImmersionTrackerController.AUCKLAND_ZONE_ID).toLocalDate();
+
+        var episodesWatchedToday =
+                ctx.select(DSL.coalesce(DSL.sum(DAILY_EPISODES.EPISODE_COUNT), BigDecimal.ZERO))
+                        .from(DAILY_EPISODES)
+                        .where(DAILY_EPISODES.DAY.eq(today))
+                        .fetchOne(0, int.class);
+
+        return new ProgressResponse(
+                totalEpisodesWatched, totalHoursWatched, episodesWatchedToday, shows);
+    }
+}
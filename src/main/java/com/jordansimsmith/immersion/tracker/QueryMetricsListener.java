@@ -0,0 +1,62 @@
+package com.jordansimsmith.immersion.tracker;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Times the execution of every jOOQ query by type, and logs the sql of queries slower than the
+ * threshold.
+ */
+public class QueryMetricsListener implements ExecuteListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryMetricsListener.class);
+    private static final String START_KEY = QueryMetricsListener.class.getName() + ".start";
+
+    private final MeterRegistry meterRegistry;
+    private final Duration slowQueryThreshold;
+
+    public QueryMetricsListener(MeterRegistry meterRegistry, Duration slowQueryThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    @Override
+    public void executeStart(ExecuteContext ctx) {
+        ctx.data(START_KEY, System.nanoTime());
+    }
+
+    @Override
+    public void executeEnd(ExecuteContext ctx) {
+        record(ctx, "success");
+    }
+
+    @Override
+    public void exception(ExecuteContext ctx) {
+        record(ctx, "error");
+    }
+
+    private void record(ExecuteContext ctx, String outcome) {
+        // remove the start time so a failed query is not recorded twice
+        var start = (Long) ctx.data().remove(START_KEY);
+        if (start == null) {
+            return;
+        }
+
+        var duration = Duration.ofNanos(System.nanoTime() - start);
+        Timer.builder("immersion.db.query")
+                .description("Execution time of database queries")
+                .tag("type", ctx.type().name().toLowerCase())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(duration);
+
+        if (duration.compareTo(slowQueryThreshold) > 0) {
+            LOGGER.warn("slow query took {} ms: {}", duration.toMillis(), ctx.sql());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.jordansimsmith.immersion.tracker;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jordansimsmith.immersion.tracker.ImmersionTrackerController.SyncEpisodesRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Reads sync requests token by token and hands them out in fixed-size chunks, so that memory use
+ * depends on the chunk size rather than the size of the payload.
+ *
+ * <p>Accepts either a single JSON array of episodes or newline delimited JSON objects.
+ */
+public class SyncEpisodesReader {
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public SyncEpisodesReader(ObjectMapper objectMapper, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunk size must be positive");
+        }
+
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reads the whole input, calling the consumer with each full chunk and a final partial chunk.
+     * The consumer must not retain the chunk after it returns.
+     *
+     * @return the total number of episodes read
+     */
+    public int read(InputStream inputStream, Consumer<List<SyncEpisodesRequest>> consumer) {
+        var total = 0;
+        var chunk = new ArrayList<SyncEpisodesRequest>(chunkSize);
+
+        try (var parser = objectMapper.getFactory().createParser(inputStream)) {
+            var token = parser.nextToken();
+
+            // a json array wraps the episodes, ndjson has them at the root
+            var array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+
+            while (token == JsonToken.START_OBJECT) {
+                chunk.add(readEpisode(parser));
+                total++;
+
+                if (chunk.size() == chunkSize) {
+                    consumer.accept(chunk);
+                    chunk.clear();
+                }
+
+                token = parser.nextToken();
+            }
+
+            var complete =
+                    array
+                            ? token == JsonToken.END_ARRAY && parser.nextToken() == null
+                            : token == null;
+            if (!complete) {
+                throw new ResponseStatusException(
+                        HttpStatus.BAD_REQUEST, "expected a list of episodes");
+            }
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "malformed episodes", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (!chunk.isEmpty()) {
+            consumer.accept(chunk);
+        }
+
+        return total;
+    }
+
+    private SyncEpisodesRequest readEpisode(JsonParser parser) throws IOException {
+        var episode = objectMapper.readValue(parser, SyncEpisodesRequest.class);
+        if (episode.folderName() == null || episode.fileName() == null) {
+            throw new ResponseStatusException(
+                    HttpStatus.BAD_REQUEST, "episodes require a folder_name and file_name");
+        }
+
+        return episode;
+    }
+}
@@ -0,0 +1,229 @@
+package com.jordansimsmith.immersion.tracker;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.jordansimsmith.immersion.tracker.ImmersionTrackerController.SyncEpisodesRequest;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jooq.DSLContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Queues sync jobs in memory and writes them from a single thread. Jobs waiting at the same time
+ * are coalesced into one transaction, with episodes submitted by more than one job only written
+ * once, so concurrent syncs no longer contend for the same show rows.
+ *
+ * <p>The queue is bounded by the number of episodes waiting. Jobs are not persisted, so jobs still
+ * waiting when the server is killed are lost, but the client can sync them again.
+ */
+@Component
+public class SyncIngestionQueue {
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    public record Job(
+            @JsonProperty("id") UUID id,
+            @JsonProperty("status") String status,
+            @JsonProperty("episodes_submitted") int episodesSubmitted,
+            @Nullable @JsonProperty("episodes_added") Integer episodesAdded,
+            @Nullable @JsonProperty("error") String error) {}
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SyncIngestionQueue.class);
+
+    private static final class Submission {
+        private final UUID id = UUID.randomUUID();
+        private final int size;
+        private List<SyncEpisodesRequest> episodes;
+        private volatile Status status = Status.QUEUED;
+        private volatile int episodesAdded;
+        private volatile String error;
+
+        private Submission(List<SyncEpisodesRequest> episodes) {
+            this.episodes = episodes;
+            this.size = episodes.size();
+        }
+
+        private Job job() {
+            return new Job(
+                    id,
+                    status.name().toLowerCase(),
+                    size,
+                    status == Status.COMPLETED ? episodesAdded : null,
+                    error);
+        }
+    }
+
+    private final DSLContext ctx;
+    private final EpisodeSyncService episodeSyncService;
+    private final DataVersion dataVersion;
+    private final DistributionSummary syncEpisodesAdded;
+    private final DistributionSummary batchJobs;
+    private final int capacity;
+    private final int batchSize;
+    private final LinkedBlockingQueue<Submission> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger queuedEpisodes = new AtomicInteger();
+    private final Map<UUID, Submission> jobs;
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    @Autowired
+    public SyncIngestionQueue(
+            DSLContext ctx,
+            EpisodeSyncService episodeSyncService,
+            DataVersion dataVersion,
+            MeterRegistry meterRegistry,
+            DistributionSummary syncEpisodesAdded,
+            @Value("${immersion.tracker.sync.queue-capacity}") int capacity,
+            @Value("${immersion.tracker.sync.batch-size}") int batchSize,
+            @Value("${immersion.tracker.sync.job-history}") int jobHistory) {
+        this.ctx = ctx;
+        this.episodeSyncService = episodeSyncService;
+        this.dataVersion = dataVersion;
+        this.syncEpisodesAdded = syncEpisodesAdded;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.jobs =
+                new LinkedHashMap<>() {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<UUID, Submission> eldest) {
+                        return size() > jobHistory;
+                    }
+                };
+
+        Gauge.builder("immersion.sync.queue.episodes", queuedEpisodes, AtomicInteger::get)
+                .description("Number of episodes waiting to be written")
+                .register(meterRegistry);
+        this.batchJobs =
+                DistributionSummary.builder("immersion.sync.queue.batch.jobs")
+                        .description("Number of queued sync jobs coalesced into each write")
+                        .register(meterRegistry);
+
+        this.writer = Thread.ofPlatform().name("sync-writer").daemon().start(this::write);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Queues the episodes to be written, failing with a 503 if the queue has no room for them. */
+    public Job submit(List<SyncEpisodesRequest> episodes) {
+        var submission = new Submission(episodes);
+        synchronized (jobs) {
+            if (!running) {
+                throw new ResponseStatusException(
+                        HttpStatus.SERVICE_UNAVAILABLE, "sync queue is shutting down");
+            }
+            // the writer only ever frees up room, so checking under the lock is enough
+            if (queuedEpisodes.get() + submission.size > capacity) {
+                throw new ResponseStatusException(
+                        HttpStatus.SERVICE_UNAVAILABLE, "sync queue is full");
+            }
+            queuedEpisodes.addAndGet(submission.size);
+            jobs.put(submission.id, submission);
+            queue.add(submission);
+        }
+
+        return submission.job();
+    }
+
+    public Optional<Job> job(UUID id) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(id)).map(Submission::job);
+        }
+    }
+
+    /** Stops accepting jobs and waits for the queued jobs to be written. */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        synchronized (jobs) {
+            running = false;
+        }
+        writer.join();
+    }
+
+    private void write() {
+        while (running || !queue.isEmpty()) {
+            Submission first;
+            try {
+                first = queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+
+            // coalesce every other job already waiting, up to the batch size
+            var batch = new ArrayList<Submission>();
+            batch.add(first);
+            var size = first.size;
+            for (var next = queue.peek();
+                    next != null && size + next.size <= batchSize;
+                    next = queue.peek()) {
+                batch.add(queue.remove());
+                size += next.size;
+            }
+            queuedEpisodes.addAndGet(-size);
+
+            write(batch);
+        }
+    }
+
+    private void write(List<Submission> batch) {
+        batchJobs.record(batch.size());
+
+        // an episode submitted by several jobs is only counted as added by the first of them
+        var owners = new HashMap<SyncEpisodesRequest, Submission>();
+        for (var submission : batch) {
+            submission.status = Status.RUNNING;
+            for (var episode : submission.episodes) {
+                owners.putIfAbsent(episode, submission);
+            }
+            submission.episodes = null;
+        }
+
+        Set<SyncEpisodesRequest> added;
+        try {
+            added = episodeSyncService.syncReturningAdded(ctx, owners.keySet());
+        } catch (RuntimeException e) {
+            LOGGER.error("failed to write {} sync jobs", batch.size(), e);
+            for (var submission : batch) {
+                submission.error = "failed to write episodes";
+                submission.status = Status.FAILED;
+            }
+            return;
+        }
+
+        // bump first, so clients polling for completion never see the previous version
+        if (!added.isEmpty()) {
+            dataVersion.bump();
+        }
+
+        var episodesAdded = new HashMap<Submission, Integer>();
+        for (var episode : added) {
+            episodesAdded.merge(owners.get(episode), 1, Integer::sum);
+        }
+        for (var submission : batch) {
+            submission.episodesAdded = episodesAdded.getOrDefault(submission, 0);
+            submission.status = Status.COMPLETED;
+            syncEpisodesAdded.record(submission.episodesAdded);
+        }
+    }
+}
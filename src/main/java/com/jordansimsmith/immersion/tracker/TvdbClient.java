@@ -0,0 +1,219 @@
+package com.jordansimsmith.immersion.tracker;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
+
+/**
+ * Client for the TVDB v4 api. Connections are pooled, the bearer token is reused until shortly
+ * before it expires and a bounded number of series are cached for a while, so mapping many shows
+ * costs one login.
+ */
+@Component
+public class TvdbClient {
+    public record Series(int id, @Nullable String name, @Nullable String image) {}
+
+    private record CachedSeries(Mono<Series> series, long expiresAt) {
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TvdbClient.class);
+
+    private final String apiKey;
+    private final Duration tokenTtl;
+    private final Duration cacheTtl;
+    private final int parallelism;
+    private final ConnectionProvider connectionProvider;
+    private final WebClient client;
+    private final MeterRegistry meterRegistry;
+    private final LinkedHashMap<Integer, CachedSeries> series;
+
+    private volatile Mono<String> token;
+
+    @Autowired
+    public TvdbClient(
+            @Value("${tvdb.api.url}") String baseUrl,
+            @Value("${tvdb.api.key}") String apiKey,
+            @Value("${tvdb.token.ttl}") Duration tokenTtl,
+            @Value("${tvdb.cache.ttl}") Duration cacheTtl,
+            @Value("${tvdb.cache.size}") int cacheSize,
+            @Value("${tvdb.max-connections}") int maxConnections,
+            @Value("${tvdb.batch.parallelism}") int parallelism,
+            MeterRegistry meterRegistry) {
+        this.apiKey = Objects.requireNonNull(apiKey);
+        this.tokenTtl = tokenTtl;
+        this.cacheTtl = cacheTtl;
+        this.parallelism = parallelism;
+        this.meterRegistry = meterRegistry;
+        this.series =
+                new LinkedHashMap<>() {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Integer, CachedSeries> eldest) {
+                        return size() > cacheSize;
+                    }
+                };
+        this.connectionProvider =
+                ConnectionProvider.builder("tvdb").maxConnections(maxConnections).build();
+        this.client =
+                WebClient.builder()
+                        .clientConnector(
+                                new ReactorClientHttpConnector(
+                                        HttpClient.create(connectionProvider)))
+                        .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .baseUrl(baseUrl)
+                        .build();
+        this.token = login();
+    }
+
+    public Series getSeries(int id) {
+        return Objects.requireNonNull(series(id).block());
+    }
+
+    /**
+     * Resolves many series concurrently, with at most the configured number in flight. A series
+     * which can't be resolved is left out rather than failing the rest of the batch.
+     */
+    public Map<Integer, Series> getSeries(Collection<Integer> ids) {
+        return Objects.requireNonNull(
+                Flux.fromIterable(ids)
+                        .distinct()
+                        .flatMap(
+                                id ->
+                                        series(id)
+                                                .onErrorResume(
+                                                        error -> {
+                                                            LOGGER.warn(
+                                                                    "failed to retrieve series {}",
+                                                                    id,
+                                                                    error);
+                                                            return Mono.empty();
+                                                        }),
+                                parallelism)
+                        .collectMap(Series::id)
+                        .block());
+    }
+
+    @PreDestroy
+    public void close() {
+        connectionProvider.dispose();
+    }
+
+    private Mono<Series> series(int id) {
+        var now = System.nanoTime();
+        synchronized (series) {
+            // every entry lives for the same time, so the eldest expire first
+            var iterator = series.values().iterator();
+            while (iterator.hasNext() && iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+
+            var cached = series.get(id);
+            if (cached == null) {
+                var fetch =
+                        fetchSeries(id)
+                                .cache(
+                                        value -> cacheTtl,
+                                        error -> Duration.ZERO,
+                                        () -> Duration.ZERO);
+                cached = new CachedSeries(fetch, now + cacheTtl.toNanos());
+                series.put(id, cached);
+            }
+            return cached.series();
+        }
+    }
+
+    private Mono<Series> fetchSeries(int id) {
+        return Mono.defer(() -> token)
+                .flatMap(
+                        t ->
+                                timed(
+                                        "series",
+                                        client.get()
+                                                .uri("/series/{id}", id)
+                                                .header(HttpHeaders.AUTHORIZATION, "Bearer " + t)
+                                                .accept(MediaType.APPLICATION_JSON)
+                                                .retrieve()
+                                                .bodyToMono(JsonNode.class)))
+                // the token was revoked early, log in again and retry once
+                .retryWhen(
+                        Retry.max(1)
+                                .filter(WebClientResponseException.Unauthorized.class::isInstance)
+                                .doBeforeRetry(signal -> token = login()))
+                .map(
+                        res -> {
+                            if (!"success".equals(res.path("status").asText())) {
+                                throw new RuntimeException(
+                                        "failed to retrieve series from tvdb api");
+                            }
+                            var name = res.path("data").path("name").asText(null);
+                            var image = res.path("data").path("image").asText(null);
+                            return new Series(id, name, image);
+                        });
+    }
+
+    /** Authenticates lazily, sharing the token between callers until it is due for a refresh. */
+    private Mono<String> login() {
+        var req =
+                client.post()
+                        .uri("/login")
+                        .body(BodyInserters.fromValue(Map.of("apikey", apiKey)))
+                        .accept(MediaType.APPLICATION_JSON)
+                        .retrieve()
+                        .bodyToMono(JsonNode.class);
+        return timed("login", req)
+                .map(
+                        res -> {
+                            if (!"success".equals(res.path("status").asText())) {
+                                throw new RuntimeException("failed to login to tvdb api");
+                            }
+                            return Objects.requireNonNull(
+                                    res.path("data").path("token").asText(null));
+                        })
+                .cache(value -> tokenTtl, error -> Duration.ZERO, () -> Duration.ZERO);
+    }
+
+    /** Times each subscription to the request, so a retry is recorded as a second request. */
+    private <T> Mono<T> timed(String operation, Mono<T> req) {
+        return Mono.defer(
+                () -> {
+                    var sample = Timer.start(meterRegistry);
+                    return req.doOnSuccess(value -> stop(sample, operation, "success"))
+                            .doOnError(error -> stop(sample, operation, "error"));
+                });
+    }
+
+    private void stop(Timer.Sample sample, String operation, String outcome) {
+        sample.stop(
+                Timer.builder("immersion.tvdb.requests")
+                        .description("Latency of requests to the tvdb api")
+                        .tag("operation", operation)
+                        .tag("outcome", outcome)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry));
+    }
+}
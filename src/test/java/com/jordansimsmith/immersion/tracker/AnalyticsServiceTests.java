@@ -0,0 +1,111 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+class AnalyticsServiceTests {
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 14);
+
+    @Test
+    void bucketsByWeekStartingMonday() {
+        var episodesPerDay = new TreeMap<LocalDate, Integer>();
+        episodesPerDay.put(LocalDate.of(2024, 3, 3), 2); // sunday
+        episodesPerDay.put(LocalDate.of(2024, 3, 4), 3); // monday
+        episodesPerDay.put(LocalDate.of(2024, 3, 10), 1); // sunday
+
+        var analytics =
+                AnalyticsService.compute(
+                        episodesPerDay,
+                        AnalyticsService.Granularity.WEEK,
+                        LocalDate.of(2024, 3, 1),
+                        LocalDate.of(2024, 3, 14),
+                        2,
+                        TODAY);
+
+        assertThat(analytics.granularity()).isEqualTo("week");
+        assertThat(analytics.totalEpisodesWatched()).isEqualTo(6);
+        assertThat(analytics.totalHoursWatched()).isEqualTo(2.0);
+        assertThat(analytics.buckets())
+                .containsExactly(
+                        new AnalyticsService.Bucket(LocalDate.of(2024, 3, 1), 2, 40 / 60.0, 2.0),
+                        new AnalyticsService.Bucket(LocalDate.of(2024, 3, 4), 4, 80 / 60.0, 4.0),
+                        new AnalyticsService.Bucket(LocalDate.of(2024, 3, 11), 0, 0.0, 4.0));
+    }
+
+    @Test
+    void fillsEmptyMonths() {
+        var episodesPerDay = new TreeMap<LocalDate, Integer>();
+        episodesPerDay.put(LocalDate.of(2024, 1, 31), 3);
+        episodesPerDay.put(LocalDate.of(2024, 3, 1), 6);
+
+        var analytics =
+                AnalyticsService.compute(
+                        episodesPerDay,
+                        AnalyticsService.Granularity.MONTH,
+                        LocalDate.of(2024, 1, 1),
+                        LocalDate.of(2024, 3, 31),
+                        3,
+                        TODAY);
+
+        assertThat(analytics.buckets())
+                .extracting(AnalyticsService.Bucket::episodesWatched)
+                .containsExactly(3, 0, 6);
+        assertThat(analytics.buckets())
+                .extracting(AnalyticsService.Bucket::rollingAverage)
+                .containsExactly(3.0, 1.5, 3.0);
+    }
+
+    @Test
+    void leavesPartialMonthsOutOfRollingAverage() {
+        var episodesPerDay = new TreeMap<LocalDate, Integer>();
+        episodesPerDay.put(LocalDate.of(2024, 1, 31), 1);
+        episodesPerDay.put(LocalDate.of(2024, 2, 10), 10);
+        episodesPerDay.put(LocalDate.of(2024, 3, 1), 2);
+
+        var analytics =
+                AnalyticsService.compute(
+                        episodesPerDay,
+                        AnalyticsService.Granularity.MONTH,
+                        LocalDate.of(2024, 1, 31),
+                        LocalDate.of(2024, 3, 1),
+                        3,
+                        TODAY);
+
+        assertThat(analytics.buckets())
+                .extracting(AnalyticsService.Bucket::start)
+                .containsExactly(
+                        LocalDate.of(2024, 1, 31),
+                        LocalDate.of(2024, 2, 1),
+                        LocalDate.of(2024, 3, 1));
+        assertThat(analytics.buckets())
+                .extracting(AnalyticsService.Bucket::rollingAverage)
+                .containsExactly(1.0, 10.0, 10.0);
+    }
+
+    @Test
+    void computesStreaks() {
+        var episodesPerDay = new TreeMap<LocalDate, Integer>();
+        for (var day = 1; day <= 4; day++) {
+            episodesPerDay.put(LocalDate.of(2024, 3, day), 1);
+        }
+        for (var day = 11; day <= 13; day++) {
+            episodesPerDay.put(LocalDate.of(2024, 3, day), 1);
+        }
+
+        var analytics =
+                AnalyticsService.compute(
+                        episodesPerDay,
+                        AnalyticsService.Granularity.DAY,
+                        LocalDate.of(2024, 3, 1),
+                        TODAY,
+                        7,
+                        TODAY);
+
+        assertThat(analytics.longestStreak()).isEqualTo(4);
+        assertThat(analytics.currentStreak()).isEqualTo(3);
+        assertThat(analytics.buckets()).hasSize(14);
+    }
+}
@@ -0,0 +1,100 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ArtworkCacheTests {
+    @TempDir Path originals;
+    @TempDir Path directory;
+
+    private final AtomicInteger fetches = new AtomicInteger();
+    private ArtworkSource source;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        for (var name : new String[] {"a", "b", "c"}) {
+            Files.write(originals.resolve(name + ".png"), png(name.charAt(0), 1000, 1500));
+        }
+        source =
+                url -> {
+                    fetches.incrementAndGet();
+                    return Files.readAllBytes(originals.resolve(url));
+                };
+    }
+
+    @Test
+    void resizesToFixedWidths() throws IOException {
+        var cache = new ArtworkCache(source, directory, Long.MAX_VALUE);
+
+        var hash = cache.put("a.png");
+
+        for (var size : ArtworkCache.Size.values()) {
+            var path = cache.get(hash, size).orElseThrow();
+            var thumbnail = ImageIO.read(path.toFile());
+            assertThat(thumbnail.getWidth()).isEqualTo(size.width());
+            assertThat(thumbnail.getHeight()).isEqualTo(size.width() * 3 / 2);
+        }
+    }
+
+    @Test
+    void fetchesEachArtworkOnce() throws IOException {
+        var cache = new ArtworkCache(source, directory, Long.MAX_VALUE);
+
+        var first = cache.put("a.png");
+        var second = cache.put("a.png");
+        var restarted = new ArtworkCache(source, directory, Long.MAX_VALUE).put("a.png");
+
+        assertThat(second).isEqualTo(first);
+        assertThat(restarted).isEqualTo(first);
+        assertThat(fetches.get()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() throws IOException {
+        var probe = new ArtworkCache(source, directory.resolve("probe"), Long.MAX_VALUE);
+        var a = probe.put("a.png");
+        var bytesPerArtwork = 0L;
+        for (var size : ArtworkCache.Size.values()) {
+            bytesPerArtwork += Files.size(probe.get(a, size).orElseThrow());
+        }
+
+        // room for two and a half artworks, the solid colours all compress to about the same size
+        var cache = new ArtworkCache(source, directory, bytesPerArtwork * 5 / 2);
+        cache.put("a.png");
+        var b = cache.put("b.png");
+        cache.get(a, ArtworkCache.Size.SMALL);
+        cache.get(a, ArtworkCache.Size.MEDIUM);
+        cache.get(a, ArtworkCache.Size.LARGE);
+        var c = cache.put("c.png");
+
+        assertThat(cache.get(b, ArtworkCache.Size.SMALL)).isEmpty();
+        for (var size : ArtworkCache.Size.values()) {
+            assertThat(cache.get(a, size)).isPresent();
+            assertThat(cache.get(c, size)).isPresent();
+        }
+    }
+
+    private static byte[] png(int rgb, int width, int height) throws IOException {
+        var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (var x = 0; x < width; x++) {
+            for (var y = 0; y < height; y++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+
+        try (var outputStream = new ByteArrayOutputStream()) {
+            ImageIO.write(image, "png", outputStream);
+            return outputStream.toByteArray();
+        }
+    }
+}
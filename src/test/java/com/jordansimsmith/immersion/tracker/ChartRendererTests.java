@@ -0,0 +1,157 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.jordansimsmith.immersion.tracker.ImmersionTrackerController.SyncEpisodesRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+class ChartRendererTests {
+    private static final ChartRenderer.Variant SMALL =
+            new ChartRenderer.Variant(200, 100, null, null);
+    private static final ChartRenderer.Variant MEDIUM =
+            new ChartRenderer.Variant(400, 200, null, null);
+    private static final ChartRenderer.Variant LARGE =
+            new ChartRenderer.Variant(800, 400, null, null);
+
+    private static TestDatabase database;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DataVersion dataVersion = new DataVersion();
+    private final EpisodeSyncService episodeSyncService = new EpisodeSyncService();
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        database = TestDatabase.start();
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        database.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        database.clear();
+        sync("episode 1.mkv", "episode 2.mkv");
+    }
+
+    @Test
+    void rendersEachVariantOncePerVersion() {
+        var renderer = renderer(32);
+
+        var first = renderer.render(0, SMALL);
+        var second = renderer.render(0, SMALL);
+        renderer.render(0, MEDIUM);
+
+        assertThat(second).isSameAs(first);
+        assertThat(renders()).isEqualTo(2);
+    }
+
+    @Test
+    void rendersAgainAfterBump() {
+        var renderer = renderer(32);
+        var before = renderer.render(dataVersion.current().version(), SMALL);
+        renderer.render(dataVersion.current().version(), MEDIUM);
+
+        sync("episode 3.mkv");
+        dataVersion.bump();
+        var after = renderer.render(dataVersion.current().version(), SMALL);
+
+        assertThat(after).isNotEqualTo(before);
+        assertThat(renders()).isEqualTo(3);
+
+        // variants cached for the old version were dropped along with it
+        renderer.render(0, MEDIUM);
+        assertThat(renders()).isEqualTo(4);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedVariant() {
+        var renderer = renderer(2);
+        renderer.render(0, SMALL);
+        renderer.render(0, MEDIUM);
+        renderer.render(0, SMALL);
+
+        renderer.render(0, LARGE);
+        assertThat(renders()).isEqualTo(3);
+
+        renderer.render(0, SMALL);
+        renderer.render(0, LARGE);
+        assertThat(renders()).isEqualTo(3);
+
+        renderer.render(0, MEDIUM);
+        assertThat(renders()).isEqualTo(4);
+    }
+
+    @Test
+    void returnsNotModifiedWithoutRendering() {
+        var controller = controller(renderer(32));
+        var etag = dataVersion.current().etag();
+
+        var unchanged = chart(controller, etag);
+        assertThat(unchanged.getStatus()).isEqualTo(304);
+        assertThat(renders()).isEqualTo(0);
+
+        dataVersion.bump();
+        var changed = chart(controller, etag);
+        assertThat(changed.getStatus()).isEqualTo(200);
+        assertThat(changed.getHeader(HttpHeaders.ETAG)).isEqualTo(dataVersion.current().etag());
+        assertThat(renders()).isEqualTo(1);
+    }
+
+    private MockHttpServletResponse chart(ImmersionTrackerController controller, String etag) {
+        var req = new MockHttpServletRequest("GET", "/chart");
+        req.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        var res = new MockHttpServletResponse();
+
+        var png = controller.chart(800, 600, null, null, new ServletWebRequest(req, res), res);
+        assertThat(png == null).isEqualTo(res.getStatus() == 304);
+
+        return res;
+    }
+
+    private ChartRenderer renderer(int cacheSize) {
+        return new ChartRenderer(database.ctx(), meterRegistry, cacheSize);
+    }
+
+    private ImmersionTrackerController controller(ChartRenderer chartRenderer) {
+        // only the chart collaborators are used
+        return new ImmersionTrackerController(
+                database.ctx(),
+                episodeSyncService,
+                null,
+                null,
+                dataVersion,
+                chartRenderer,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                meterRegistry,
+                null);
+    }
+
+    private long renders() {
+        return meterRegistry.get("immersion.chart.render").timer().count();
+    }
+
+    private void sync(String... fileNames) {
+        var episodes =
+                Arrays.stream(fileNames)
+                        .map(fileName -> new SyncEpisodesRequest("show a", fileName))
+                        .toList();
+        episodeSyncService.sync(database.ctx(), episodes);
+    }
+}
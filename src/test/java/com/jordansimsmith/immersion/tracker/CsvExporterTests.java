@@ -0,0 +1,119 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.zip.GZIPInputStream;
+import org.jooq.Record2;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+class CsvExporterTests {
+
+    @Test
+    void writesSingleHeaderAcrossPages() {
+        var outputStream = new ByteArrayOutputStream();
+
+        CsvExporter.write(pages(5, 2), outputStream, false);
+
+        assertThat(outputStream.toString(StandardCharsets.UTF_8))
+                .isEqualTo(
+                        """
+                        id,file_name
+                        0,episode 0
+                        1,episode 1
+                        2,episode 2
+                        3,episode 3
+                        4,episode 4
+                        """);
+    }
+
+    @Test
+    void writesGzip() throws IOException {
+        var outputStream = new ByteArrayOutputStream();
+
+        CsvExporter.write(pages(2, 1000), outputStream, true);
+
+        try (var inputStream =
+                new GZIPInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            assertThat(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8))
+                    .isEqualTo(
+                            """
+                            id,file_name
+                            0,episode 0
+                            1,episode 1
+                            """);
+        }
+    }
+
+    @Test
+    @Tag("small-heap")
+    void exportsMillionsOfRowsWithinSmallHeap() {
+        var rows = 5_000_000;
+        var outputStream = new CountingOutputStream();
+
+        CsvExporter.write(pages(rows, 1000), outputStream, false);
+
+        var header = "id,file_name\n".length();
+        assertThat(outputStream.count).isGreaterThan(header + rows * "0,episode 0\n".length());
+    }
+
+    @Test
+    void writesHeaderForNoRows() {
+        var outputStream = new ByteArrayOutputStream();
+
+        CsvExporter.write(pages(0, 1000), outputStream, false);
+
+        assertThat(outputStream.toString(StandardCharsets.UTF_8)).isEqualTo("id,file_name\n");
+    }
+
+    /** Generates pages of rows on demand, standing in for the keyset queries of an export. */
+    private static Iterator<Result<Record2<Integer, String>>> pages(int rows, int pageSize) {
+        var ctx = DSL.using(SQLDialect.DEFAULT);
+        var id = DSL.field("id", SQLDataType.INTEGER);
+        var fileName = DSL.field("file_name", SQLDataType.CLOB);
+
+        return new Iterator<>() {
+            private int row = 0;
+            private boolean first = true;
+
+            @Override
+            public boolean hasNext() {
+                return first || row < rows;
+            }
+
+            @Override
+            public Result<Record2<Integer, String>> next() {
+                first = false;
+                var page = ctx.newResult(id, fileName);
+                for (var end = Math.min(row + pageSize, rows); row < end; row++) {
+                    page.add(ctx.newRecord(id, fileName).values(row, "episode " + row));
+                }
+                return page;
+            }
+        };
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
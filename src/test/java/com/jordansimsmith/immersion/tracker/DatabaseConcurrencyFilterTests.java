@@ -0,0 +1,128 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class DatabaseConcurrencyFilterTests {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DataVersion dataVersion = new DataVersion();
+    private final DatabaseConcurrencyFilter filter =
+            new DatabaseConcurrencyFilter(meterRegistry, dataVersion, 2, 1, Duration.ofMillis(50));
+
+    @Test
+    void holdsPermitForRequest() throws Exception {
+        var held = new AtomicInteger(-1);
+
+        filter.doFilter(
+                new MockHttpServletRequest("GET", "/progress"),
+                new MockHttpServletResponse(),
+                (req, res) -> held.set(2 - available()));
+
+        assertThat(held.get()).isEqualTo(1);
+        assertThat(available()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsWhenNoPermitFreesUpInTime() throws Exception {
+        var res = new MockHttpServletResponse();
+        var chain = new MockFilterChain();
+
+        // the outer requests hold both permits while the innermost one waits
+        filter.doFilter(
+                new MockHttpServletRequest("GET", "/progress"),
+                new MockHttpServletResponse(),
+                (outerReq, outerRes) ->
+                        filter.doFilter(
+                                new MockHttpServletRequest("GET", "/progress"),
+                                new MockHttpServletResponse(),
+                                (innerReq, innerRes) ->
+                                        filter.doFilter(
+                                                new MockHttpServletRequest("GET", "/episodes"),
+                                                res,
+                                                chain)));
+
+        assertThat(res.getStatus()).isEqualTo(503);
+        assertThat(res.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(chain.getRequest()).isNull();
+        assertThat(available()).isEqualTo(2);
+    }
+
+    @Test
+    void limitsSyncsToUnreservedPermits() throws Exception {
+        var res = new MockHttpServletResponse();
+
+        filter.doFilter(
+                new MockHttpServletRequest("POST", "/sync"),
+                new MockHttpServletResponse(),
+                (req, ignored) ->
+                        filter.doFilter(
+                                new MockHttpServletRequest("POST", "/sync"),
+                                res,
+                                new MockFilterChain()));
+
+        assertThat(res.getStatus()).isEqualTo(503);
+        assertThat(available()).isEqualTo(2);
+    }
+
+    @Test
+    void releasesPermitWhenAsyncRequestCompletes() throws Exception {
+        var req = new MockHttpServletRequest("GET", "/episodes");
+        req.setAsyncSupported(true);
+        var res = new MockHttpServletResponse();
+
+        filter.doFilter(req, res, (ignored, alsoIgnored) -> req.startAsync());
+
+        assertThat(available()).isEqualTo(1);
+        req.getAsyncContext().complete();
+        assertThat(available()).isEqualTo(2);
+    }
+
+    @Test
+    void skipsPermitForUnchangedChart() throws Exception {
+        var req = new MockHttpServletRequest("GET", "/chart");
+        req.addHeader(HttpHeaders.IF_NONE_MATCH, dataVersion.current().etag());
+        var held = new AtomicInteger(-1);
+
+        filter.doFilter(req, new MockHttpServletResponse(), (r, s) -> held.set(2 - available()));
+
+        assertThat(held.get()).isEqualTo(0);
+    }
+
+    @Test
+    void takesPermitForChangedChart() throws Exception {
+        var req = new MockHttpServletRequest("GET", "/chart");
+        req.addHeader(HttpHeaders.IF_NONE_MATCH, dataVersion.current().etag());
+        dataVersion.bump();
+        var held = new AtomicInteger(-1);
+
+        filter.doFilter(req, new MockHttpServletResponse(), (r, s) -> held.set(2 - available()));
+
+        assertThat(held.get()).isEqualTo(1);
+    }
+
+    @Test
+    void skipsPermitForImages() throws Exception {
+        var held = new AtomicInteger(-1);
+        FilterChain chain = (req, res) -> held.set(2 - available());
+
+        filter.doFilter(
+                new MockHttpServletRequest("GET", "/images/abc/small"),
+                new MockHttpServletResponse(),
+                chain);
+
+        assertThat(held.get()).isEqualTo(0);
+    }
+
+    private int available() {
+        return (int) meterRegistry.get("immersion.db.limiter.available").gauge().value();
+    }
+}
@@ -0,0 +1,31 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+class EpisodeDigestsTests {
+
+    @Test
+    void hashesMatchTheMigrationBackfill() {
+        // left(encode(sha256(convert_to(file_name, 'UTF8')), 'hex'), 16)
+        assertThat(EpisodeDigests.format(EpisodeDigests.hash("episode 1.mkv")))
+                .isEqualTo("4ef8ff73d795b29e");
+        assertThat(EpisodeDigests.format(EpisodeDigests.hash("[SubsPlease] 呪術廻戦 - 01")))
+                .isEqualTo("4426b695e0e338e4");
+        assertThat(EpisodeDigests.hash("episode 4.mkv")).isEqualTo(-329998002155650088L);
+    }
+
+    @Test
+    void parsesFormattedHashes() {
+        var hash = EpisodeDigests.hash("episode 4.mkv");
+
+        assertThat(EpisodeDigests.parse(EpisodeDigests.format(hash))).isEqualTo(hash);
+        assertThat(EpisodeDigests.parse("0000000000000001")).isEqualTo(1);
+        assertThatThrownBy(() -> EpisodeDigests.parse("1"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> EpisodeDigests.parse("episode 1.mkv!!!"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
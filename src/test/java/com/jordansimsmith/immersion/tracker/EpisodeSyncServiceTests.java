@@ -0,0 +1,230 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.DAILY_EPISODES;
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.EPISODE;
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.SHOW;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.jordansimsmith.immersion.tracker.ImmersionTrackerController.SyncEpisodesRequest;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class EpisodeSyncServiceTests {
+    private static TestDatabase database;
+
+    private final EpisodeSyncService episodeSyncService = new EpisodeSyncService();
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        database = TestDatabase.start();
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        database.close();
+    }
+
+    @BeforeEach
+    void clearDatabase() {
+        database.clear();
+    }
+
+    @Test
+    void syncsDuplicatesWithinBatchOnce() {
+        var added =
+                sync(
+                        new SyncEpisodesRequest("show a", "episode 1.mkv"),
+                        new SyncEpisodesRequest("show a", "episode 1.mkv"),
+                        new SyncEpisodesRequest("show a", "episode 2.mkv"));
+
+        assertThat(added).isEqualTo(2);
+        assertThat(database.ctx().fetchCount(EPISODE)).isEqualTo(2);
+        assertShow("show a", "episode 1.mkv", "episode 2.mkv");
+        assertThat(dailyEpisodes("show a")).isEqualTo(2);
+    }
+
+    @Test
+    void ignoresEpisodesWhichAlreadyExist() {
+        sync(
+                new SyncEpisodesRequest("show a", "episode 1.mkv"),
+                new SyncEpisodesRequest("show a", "episode 2.mkv"));
+
+        var added =
+                sync(
+                        new SyncEpisodesRequest("show a", "episode 1.mkv"),
+                        new SyncEpisodesRequest("show a", "episode 2.mkv"),
+                        new SyncEpisodesRequest("show a", "episode 3.mkv"));
+        var resynced =
+                sync(
+                        new SyncEpisodesRequest("show a", "episode 1.mkv"),
+                        new SyncEpisodesRequest("show a", "episode 3.mkv"));
+
+        assertThat(added).isEqualTo(1);
+        assertThat(resynced).isEqualTo(0);
+        assertThat(database.ctx().fetchCount(EPISODE)).isEqualTo(3);
+        assertShow("show a", "episode 1.mkv", "episode 2.mkv", "episode 3.mkv");
+        assertThat(dailyEpisodes("show a")).isEqualTo(3);
+    }
+
+    @Test
+    void syncsNewAndExistingShowsTogether() {
+        sync(new SyncEpisodesRequest("show a", "episode 1.mkv"));
+
+        var added =
+                sync(
+                        new SyncEpisodesRequest("show b", "episode 1.mkv"),
+                        new SyncEpisodesRequest("show a", "episode 2.mkv"),
+                        new SyncEpisodesRequest("show b", "episode 2.mkv"));
+
+        assertThat(added).isEqualTo(3);
+        assertThat(database.ctx().fetchCount(SHOW)).isEqualTo(2);
+        assertShow("show a", "episode 1.mkv", "episode 2.mkv");
+        assertShow("show b", "episode 1.mkv", "episode 2.mkv");
+        assertThat(dailyEpisodes("show a")).isEqualTo(2);
+        assertThat(dailyEpisodes("show b")).isEqualTo(2);
+    }
+
+    @Test
+    void returnsAddedEpisodes() {
+        sync(new SyncEpisodesRequest("show a", "episode 1.mkv"));
+
+        var added =
+                episodeSyncService.syncReturningAdded(
+                        database.ctx(),
+                        List.of(
+                                new SyncEpisodesRequest("show a", "episode 1.mkv"),
+                                new SyncEpisodesRequest("show a", "episode 2.mkv"),
+                                new SyncEpisodesRequest("show b", "episode 1.mkv")));
+
+        assertThat(added)
+                .isEqualTo(
+                        Set.of(
+                                new SyncEpisodesRequest("show a", "episode 2.mkv"),
+                                new SyncEpisodesRequest("show b", "episode 1.mkv")));
+    }
+
+    @Test
+    void findsHashesMissingFromEachShow() {
+        sync(
+                new SyncEpisodesRequest("show a", "episode 1.mkv"),
+                new SyncEpisodesRequest("show a", "episode 2.mkv"),
+                new SyncEpisodesRequest("show a", "episode 3.mkv"));
+
+        // a folder only holds the episodes watched since it was last synced
+        var missing =
+                episodeSyncService.missing(
+                        database.ctx(),
+                        Map.of(
+                                "show a",
+                                Set.of(hash("episode 2.mkv"), hash("episode 4.mkv")),
+                                "show b",
+                                Set.of(hash("episode 1.mkv")),
+                                "show c",
+                                Set.of()));
+
+        assertThat(missing)
+                .containsExactly(
+                        Map.entry("show a", List.of(hash("episode 4.mkv"))),
+                        Map.entry("show b", List.of(hash("episode 1.mkv"))));
+    }
+
+    @Test
+    void syncsConcurrentlyWithoutDeadlocking() throws Exception {
+        // every sync touches every show, in a different order, so that locking them in the order
+        // of the batch would deadlock
+        var shows = 20;
+        var syncs = 8;
+        var episodes = new ArrayList<List<SyncEpisodesRequest>>();
+        for (var i = 0; i < syncs; i++) {
+            var batch = new ArrayList<SyncEpisodesRequest>();
+            for (var show = 0; show < shows; show++) {
+                batch.add(new SyncEpisodesRequest("show " + show, "episode " + i + ".mkv"));
+                batch.add(new SyncEpisodesRequest("show " + show, "episode shared.mkv"));
+            }
+            Collections.shuffle(batch, new Random(i));
+            episodes.add(batch);
+        }
+
+        var start = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(syncs);
+        try {
+            var results = new ArrayList<Future<Integer>>();
+            for (var batch : episodes) {
+                results.add(
+                        executor.submit(
+                                () -> {
+                                    start.await();
+                                    return episodeSyncService.sync(database.ctx(), batch);
+                                }));
+            }
+            start.countDown();
+
+            var added = 0;
+            for (var result : results) {
+                added += result.get(1, TimeUnit.MINUTES);
+            }
+            assertThat(added).isEqualTo(shows * (syncs + 1));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        var fileNames = new String[syncs + 1];
+        for (var i = 0; i < syncs; i++) {
+            fileNames[i] = "episode " + i + ".mkv";
+        }
+        fileNames[syncs] = "episode shared.mkv";
+        for (var show = 0; show < shows; show++) {
+            assertShow("show " + show, fileNames);
+            assertThat(dailyEpisodes("show " + show)).isEqualTo(syncs + 1);
+        }
+    }
+
+    private static long hash(String fileName) {
+        return EpisodeDigests.hash(fileName);
+    }
+
+    private int sync(SyncEpisodesRequest... episodes) {
+        return episodeSyncService.sync(database.ctx(), List.of(episodes));
+    }
+
+    private static void assertShow(String folderName, String... fileNames) {
+        var show = database.ctx().fetchSingle(SHOW, SHOW.FOLDER_NAME.eq(folderName));
+        var digest = 0L;
+        for (var fileName : fileNames) {
+            digest ^= EpisodeDigests.hash(fileName);
+        }
+
+        assertThat(show.getEpisodeCount()).isEqualTo(fileNames.length);
+        assertThat(show.getEpisodeDigest()).isEqualTo(digest);
+        var episodes = database.ctx().fetch(EPISODE, EPISODE.SHOW_ID.eq(show.getId()));
+        assertThat(episodes.getValues(EPISODE.FILE_NAME)).containsExactlyInAnyOrder(fileNames);
+        for (var episode : episodes) {
+            assertThat(episode.getFileHash()).isEqualTo(hash(episode.getFileName()));
+        }
+    }
+
+    private static int dailyEpisodes(String folderName) {
+        var today = LocalDate.now(ImmersionTrackerController.AUCKLAND_ZONE_ID);
+        return database.ctx()
+                .select(DAILY_EPISODES.EPISODE_COUNT)
+                .from(DAILY_EPISODES)
+                .join(SHOW)
+                .on(SHOW.ID.eq(DAILY_EPISODES.SHOW_ID))
+                .where(SHOW.FOLDER_NAME.eq(folderName))
+                .and(DAILY_EPISODES.DAY.eq(today))
+                .fetchSingle(DAILY_EPISODES.EPISODE_COUNT);
+    }
+}
@@ -0,0 +1,233 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.EPISODE;
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.SHOW;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import jakarta.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+class ListingServiceTests {
+    private static TestDatabase database;
+
+    private ListingService listingService;
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        database = TestDatabase.start();
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        database.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        database.clear();
+        listingService = new ListingService(database.ctx());
+
+        // show 1 and 3 are mapped, show 4 has no episodes
+        show(1, "show a", 101);
+        show(2, "show b", null);
+        show(3, "show c", 103);
+        show(4, "show d", null);
+
+        // whole minutes print without seconds, and some episodes share a timestamp
+        episode(1, 1, LocalDateTime.of(2024, 1, 1, 20, 0));
+        episode(2, 2, LocalDateTime.of(2024, 1, 1, 20, 0));
+        episode(3, 1, LocalDateTime.of(2024, 1, 2, 19, 30, 15));
+        episode(4, 3, LocalDateTime.of(2024, 1, 3, 21, 0));
+        episode(5, 2, LocalDateTime.of(2024, 1, 3, 21, 0));
+    }
+
+    @Test
+    void pagesThroughShows() {
+        var first = listingService.listShows(3, null, null, null, null, List.of());
+        var last = listingService.listShows(3, first.nextCursor(), null, null, null, List.of());
+
+        assertThat(ids(first)).containsExactly(1, 2, 3);
+        assertThat(first.nextCursor()).isEqualTo(ListingService.showCursor(3));
+        assertThat(ids(last)).containsExactly(4);
+        assertThat(last.nextCursor()).isNull();
+        assertThat(first.items().get(0))
+                .containsExactly(
+                        Map.entry("id", 1),
+                        Map.entry("folder_name", "show a"),
+                        Map.entry("tvdb_id", 101),
+                        Map.entry("tvdb_name", "series 101"),
+                        Map.entry("tvdb_image", "https://artworks.thetvdb.com/101.jpg"));
+    }
+
+    @Test
+    void endsOnFullLastPage() {
+        var first = listingService.listShows(2, null, null, null, null, List.of());
+        var last = listingService.listShows(2, first.nextCursor(), null, null, null, List.of());
+
+        assertThat(ids(last)).containsExactly(3, 4);
+        assertThat(last.nextCursor()).isNull();
+    }
+
+    @Test
+    void pagesThroughEpisodesWithSharedTimestamps() {
+        var ids = new ArrayList<Object>();
+        var cursors = new ArrayList<String>();
+        String cursor = null;
+        do {
+            var page = listingService.listEpisodes(2, cursor, null, null, null, List.of());
+            ids.addAll(ids(page));
+            cursor = page.nextCursor();
+            cursors.add(cursor);
+        } while (cursor != null);
+
+        assertThat(ids).containsExactly(1, 2, 3, 4, 5);
+        assertThat(cursors)
+                .containsExactly(
+                        ListingService.episodeCursor(LocalDateTime.of(2024, 1, 1, 20, 0), 2),
+                        ListingService.episodeCursor(LocalDateTime.of(2024, 1, 3, 21, 0), 4),
+                        null);
+        assertThat(decode(cursors.get(0))).isEqualTo("2024-01-01T20:00,2");
+    }
+
+    @Test
+    void filtersShowsByTvdbMapping() {
+        var mapped =
+                listingService.listShows(
+                        10, null, ListingService.TvdbStatus.MAPPED, null, null, List.of());
+        var unmapped =
+                listingService.listShows(
+                        10, null, ListingService.TvdbStatus.UNMAPPED, null, null, List.of());
+
+        assertThat(ids(mapped)).containsExactly(1, 3);
+        assertThat(ids(unmapped)).containsExactly(2, 4);
+    }
+
+    @Test
+    void filtersByDaysWatched() {
+        var day = LocalDate.of(2024, 1, 1);
+
+        var shows = listingService.listShows(10, null, null, day.plusDays(1), null, List.of());
+        var episodes = listingService.listEpisodes(10, null, null, day, day.plusDays(1), List.of());
+        var showEpisodes = listingService.listEpisodes(10, null, 2, null, day, List.of());
+
+        assertThat(ids(shows)).containsExactly(1, 2, 3);
+        assertThat(ids(episodes)).containsExactly(1, 2, 3);
+        assertThat(ids(showEpisodes)).containsExactly(2);
+    }
+
+    @Test
+    void projectsRequestedFields() {
+        var shows = listingService.listShows(1, null, null, null, null, List.of("folder_name"));
+        var episodes =
+                listingService.listEpisodes(1, null, null, null, null, List.of("id", "timestamp"));
+
+        assertThat(shows.items()).containsExactly(Map.of("folder_name", "show a"));
+        assertThat(episodes.items())
+                .containsExactly(Map.of("id", 1, "timestamp", LocalDateTime.of(2024, 1, 1, 20, 0)));
+        assertThat(shows.nextCursor()).isEqualTo(ListingService.showCursor(1));
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        for (var cursor : List.of("not a cursor!", encode("one"), encode("1,2"))) {
+            assertBadRequest(
+                    () -> listingService.listShows(10, cursor, null, null, null, List.of()),
+                    "malformed cursor");
+        }
+        for (var cursor :
+                List.of(
+                        ListingService.showCursor(1),
+                        encode("yesterday,1"),
+                        encode("2024-01-01T20:00,one"))) {
+            assertBadRequest(
+                    () -> listingService.listEpisodes(10, cursor, null, null, null, List.of()),
+                    "malformed cursor");
+        }
+    }
+
+    @Test
+    void rejectsUnknownFieldsAndLimits() {
+        assertBadRequest(
+                () -> listingService.listShows(10, null, null, null, null, List.of("file_name")),
+                "unknown field: file_name");
+        assertBadRequest(
+                () -> listingService.listEpisodes(0, null, null, null, null, List.of()),
+                "limit must be between 1 and 1000");
+        assertBadRequest(
+                () -> listingService.listShows(1001, null, null, null, null, List.of()),
+                "limit must be between 1 and 1000");
+    }
+
+    private static void assertBadRequest(Runnable listing, String reason) {
+        assertThatThrownBy(listing::run)
+                .isInstanceOfSatisfying(
+                        ResponseStatusException.class,
+                        e -> {
+                            assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+                            assertThat(e.getReason()).isEqualTo(reason);
+                        });
+    }
+
+    private static List<Object> ids(ListingService.Page page) {
+        var ids = new ArrayList<Object>();
+        for (var item : page.items()) {
+            ids.add(item.get("id"));
+        }
+        return ids;
+    }
+
+    private static String encode(String cursor) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+
+    private static void show(int id, String folderName, @Nullable Integer tvdbId) {
+        database.ctx()
+                .insertInto(
+                        SHOW,
+                        SHOW.ID,
+                        SHOW.FOLDER_NAME,
+                        SHOW.TVDB_ID,
+                        SHOW.TVDB_NAME,
+                        SHOW.TVDB_IMAGE)
+                .values(
+                        id,
+                        folderName,
+                        tvdbId,
+                        tvdbId != null ? "series " + tvdbId : null,
+                        tvdbId != null ? "https://artworks.thetvdb.com/" + tvdbId + ".jpg" : null)
+                .execute();
+    }
+
+    private static void episode(int id, int showId, LocalDateTime timestamp) {
+        var fileName = "episode " + id + ".mkv";
+        database.ctx()
+                .insertInto(
+                        EPISODE,
+                        EPISODE.ID,
+                        EPISODE.SHOW_ID,
+                        EPISODE.FILE_NAME,
+                        EPISODE.FILE_HASH,
+                        EPISODE.TIMESTAMP)
+                .values(id, showId, fileName, EpisodeDigests.hash(fileName), timestamp)
+                .execute();
+    }
+}
@@ -0,0 +1,89 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.DAILY_EPISODES;
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.SHOW;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.jordansimsmith.immersion.tracker.ImmersionTrackerController.SyncEpisodesRequest;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ProgressConsistencyCheckerTests {
+    private static TestDatabase database;
+
+    private final EpisodeSyncService episodeSyncService = new EpisodeSyncService();
+    private ProgressConsistencyChecker checker;
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        database = TestDatabase.start();
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        database.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        database.clear();
+        checker = new ProgressConsistencyChecker(database.ctx());
+
+        episodeSyncService.sync(
+                database.ctx(),
+                List.of(
+                        new SyncEpisodesRequest("show a", "episode 1.mkv"),
+                        new SyncEpisodesRequest("show a", "episode 2.mkv"),
+                        new SyncEpisodesRequest("show b", "episode 1.mkv")));
+        episodeSyncService.sync(
+                database.ctx(),
+                List.of(
+                        new SyncEpisodesRequest("show a", "episode 3.mkv"),
+                        new SyncEpisodesRequest("show b", "episode 1.mkv")));
+    }
+
+    @Test
+    void findsNoMismatchesAfterSyncing() {
+        assertThat(checker.check()).isEmpty();
+    }
+
+    @Test
+    void reportsTamperedAggregates() {
+        var showA = showId("show a");
+        var showB = showId("show b");
+        var today = LocalDate.now(ImmersionTrackerController.AUCKLAND_ZONE_ID);
+        var digest =
+                EpisodeDigests.format(
+                        EpisodeDigests.hash("episode 1.mkv")
+                                ^ EpisodeDigests.hash("episode 2.mkv")
+                                ^ EpisodeDigests.hash("episode 3.mkv"));
+
+        database.ctx().update(SHOW).set(SHOW.EPISODE_COUNT, 4).where(SHOW.ID.eq(showA)).execute();
+        database.ctx()
+                .update(DAILY_EPISODES)
+                .set(DAILY_EPISODES.EPISODE_COUNT, 5)
+                .where(DAILY_EPISODES.SHOW_ID.eq(showB))
+                .and(DAILY_EPISODES.DAY.eq(today))
+                .execute();
+
+        var showMismatch =
+                String.format(
+                        "show %d has 4 episodes with digest %2$s but expected 3 with digest %2$s",
+                        showA, digest);
+        var dailyMismatch =
+                String.format("show %d has 5 episodes on %s but expected 1", showB, today);
+        assertThat(checker.check()).containsExactly(showMismatch, dailyMismatch);
+    }
+
+    private static int showId(String folderName) {
+        return database.ctx()
+                .select(SHOW.ID)
+                .from(SHOW)
+                .where(SHOW.FOLDER_NAME.eq(folderName))
+                .fetchSingle(SHOW.ID);
+    }
+}
@@ -0,0 +1,113 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.EPISODE;
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.SHOW;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.jordansimsmith.immersion.tracker.ImmersionTrackerController.ProgressResponse;
+import com.jordansimsmith.immersion.tracker.ImmersionTrackerController.ShowProgress;
+import com.jordansimsmith.immersion.tracker.ImmersionTrackerController.SyncEpisodesRequest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.jooq.DatePart;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ProgressServiceTests {
+    private static TestDatabase database;
+
+    private final EpisodeSyncService episodeSyncService = new EpisodeSyncService();
+    private ProgressService progressService;
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        database = TestDatabase.start();
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        database.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        database.clear();
+        progressService = new ProgressService(database.ctx());
+    }
+
+    @Test
+    void matchesProgressCountedFromEpisodes() {
+        var episodes = new ArrayList<SyncEpisodesRequest>();
+        for (var i = 0; i < 60; i++) {
+            episodes.add(new SyncEpisodesRequest("show a", "episode " + i + ".mkv"));
+        }
+        for (var i = 0; i < 15; i++) {
+            episodes.add(new SyncEpisodesRequest("show b", "episode " + i + ".mkv"));
+        }
+        for (var i = 0; i < 40; i++) {
+            episodes.add(new SyncEpisodesRequest("show c", "episode " + i + ".mkv"));
+        }
+        episodeSyncService.sync(database.ctx(), episodes);
+        episodeSyncService.sync(
+                database.ctx(), List.of(new SyncEpisodesRequest("show b", "episode 15.mkv")));
+
+        // two folders of the same series, and a show without any episodes
+        database.ctx()
+                .update(SHOW)
+                .set(SHOW.TVDB_ID, 1)
+                .set(SHOW.TVDB_NAME, "series 1")
+                .where(SHOW.FOLDER_NAME.in("show a", "show c"))
+                .execute();
+        database.ctx().insertInto(SHOW, SHOW.FOLDER_NAME).values("show d").execute();
+
+        var progress = progressService.progress();
+
+        assertThat(progress).isEqualTo(countedProgress());
+        assertThat(progress.totalEpisodesWatched()).isEqualTo(116);
+        assertThat(progress.shows())
+                .containsExactly(new ShowProgress("series 1", 100), new ShowProgress(null, 16));
+    }
+
+    @Test
+    void reportsNoProgressWithoutEpisodes() {
+        assertThat(progressService.progress()).isEqualTo(new ProgressResponse(0, 0, 0, List.of()));
+        assertThat(countedProgress()).isEqualTo(new ProgressResponse(0, 0, 0, List.of()));
+    }
+
+    /** Progress counted from the episode table, as before the aggregates were maintained. */
+    private static ProgressResponse countedProgress() {
+        var ctx = database.ctx();
+        var records =
+                ctx.select(SHOW.TVDB_ID, SHOW.TVDB_NAME, DSL.count())
+                        .from(SHOW)
+                        .join(EPISODE)
+                        .on(SHOW.ID.eq(EPISODE.SHOW_ID))
+                        .groupBy(SHOW.TVDB_ID, SHOW.TVDB_NAME)
+                        .orderBy(DSL.count().desc())
+                        .fetch();
+
+        var totalEpisodesWatched = 0;
+        var shows = new ArrayList<ShowProgress>();
+        for (var record : records) {
+            totalEpisodesWatched += record.value3();
+            shows.add(new ShowProgress(record.value2(), record.value3()));
+        }
+        var totalHoursWatched =
+                totalEpisodesWatched * ImmersionTrackerController.MINUTES_PER_EPISODE / 60;
+
+        var now =
+                Instant.now().atZone(ImmersionTrackerController.AUCKLAND_ZONE_ID).toLocalDateTime();
+        var episodesWatchedToday =
+                ctx.fetchCount(
+                        EPISODE,
+                        DSL.trunc(EPISODE.TIMESTAMP, DatePart.DAY)
+                                .eq(DSL.trunc(now, DatePart.DAY)));
+
+        return new ProgressResponse(
+                totalEpisodesWatched, totalHoursWatched, episodesWatchedToday, shows);
+    }
+}
@@ -0,0 +1,129 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jordansimsmith.immersion.tracker.ImmersionTrackerController.SyncEpisodesRequest;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+class SyncEpisodesReaderTests {
+
+    @Test
+    void readsJsonArrayInChunks() {
+        var reader = new SyncEpisodesReader(new ObjectMapper(), 2);
+        var json =
+                """
+                [
+                  {"folder_name": "show a", "file_name": "episode 1"},
+                  {"folder_name": "show a", "file_name": "episode 2"},
+                  {"folder_name": "show b", "file_name": "episode 1"}
+                ]
+                """;
+
+        var chunks = new ArrayList<List<SyncEpisodesRequest>>();
+        var total = reader.read(stream(json), chunk -> chunks.add(List.copyOf(chunk)));
+
+        assertThat(total).isEqualTo(3);
+        assertThat(chunks)
+                .containsExactly(
+                        List.of(
+                                new SyncEpisodesRequest("show a", "episode 1"),
+                                new SyncEpisodesRequest("show a", "episode 2")),
+                        List.of(new SyncEpisodesRequest("show b", "episode 1")));
+    }
+
+    @Test
+    void readsNdjson() {
+        var reader = new SyncEpisodesReader(new ObjectMapper(), 10);
+        var ndjson =
+                """
+                {"folder_name": "show a", "file_name": "episode 1"}
+                {"folder_name": "show b", "file_name": "episode 1"}
+                """;
+
+        var chunks = new ArrayList<List<SyncEpisodesRequest>>();
+        var total = reader.read(stream(ndjson), chunk -> chunks.add(List.copyOf(chunk)));
+
+        assertThat(total).isEqualTo(2);
+        assertThat(chunks)
+                .containsExactly(
+                        List.of(
+                                new SyncEpisodesRequest("show a", "episode 1"),
+                                new SyncEpisodesRequest("show b", "episode 1")));
+    }
+
+    @Test
+    void rejectsMalformedEpisodes() {
+        var reader = new SyncEpisodesReader(new ObjectMapper(), 10);
+
+        assertThatThrownBy(() -> reader.read(stream("[{\"folder_name\": \"show a\"}]"), c -> {}))
+                .isInstanceOf(ResponseStatusException.class);
+        assertThatThrownBy(() -> reader.read(stream("[{\"folder_name\": \"show a\""), c -> {}))
+                .isInstanceOf(ResponseStatusException.class);
+        assertThatThrownBy(() -> reader.read(stream("{\"episodes\": []}"), c -> {}))
+                .isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    @Tag("small-heap")
+    void readsMillionEpisodesWithinSmallHeap() {
+        var episodes = 1_000_000;
+        var reader = new SyncEpisodesReader(new ObjectMapper(), 1000);
+
+        var read = new AtomicInteger();
+        var total = reader.read(generate(episodes), chunk -> read.addAndGet(chunk.size()));
+
+        assertThat(total).isEqualTo(episodes);
+        assertThat(read.get()).isEqualTo(episodes);
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Lazily generates a json array of episodes without ever holding the whole payload. */
+    private static InputStream generate(int episodes) {
+        var parts =
+                new Enumeration<InputStream>() {
+                    private int i = -1;
+
+                    @Override
+                    public boolean hasMoreElements() {
+                        return i <= episodes;
+                    }
+
+                    @Override
+                    public InputStream nextElement() {
+                        String part;
+                        if (i == -1) {
+                            part = "[";
+                        } else if (i == episodes) {
+                            part = "]";
+                        } else {
+                            part =
+                                    (i == 0 ? "" : ",")
+                                            + "{\"folder_name\": \"show "
+                                            + (i / 50)
+                                            + "\", \"file_name\": \"episode "
+                                            + i
+                                            + ".mkv\"}";
+                        }
+                        i++;
+                        return stream(part);
+                    }
+                };
+
+        return new SequenceInputStream(parts);
+    }
+}
@@ -0,0 +1,174 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.EPISODE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.jordansimsmith.immersion.tracker.ImmersionTrackerController.SyncEpisodesRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import org.jooq.Configuration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+class SyncIngestionQueueTests {
+    private static final Set<String> FINISHED = Set.of("completed", "failed");
+
+    private static TestDatabase database;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DataVersion dataVersion = new DataVersion();
+    private SyncIngestionQueue queue;
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        database = TestDatabase.start();
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        database.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        database.clear();
+        queue =
+                new SyncIngestionQueue(
+                        database.ctx(),
+                        new EpisodeSyncService(),
+                        dataVersion,
+                        meterRegistry,
+                        new ImmersionTrackerConfiguration().syncEpisodesAdded(meterRegistry),
+                        10,
+                        10,
+                        100);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        queue.close();
+    }
+
+    @Test
+    void completesJob() throws Exception {
+        var submitted =
+                queue.submit(
+                        List.of(
+                                new SyncEpisodesRequest("show a", "episode 1.mkv"),
+                                new SyncEpisodesRequest("show a", "episode 2.mkv")));
+
+        assertThat(submitted.episodesSubmitted()).isEqualTo(2);
+        assertThat(submitted.episodesAdded()).isNull();
+
+        var job = await(submitted.id());
+        assertThat(job.status()).isEqualTo("completed");
+        assertThat(job.episodesAdded()).isEqualTo(2);
+        assertThat(job.error()).isNull();
+        assertThat(database.ctx().fetchCount(EPISODE)).isEqualTo(2);
+        assertThat(dataVersion.current().version()).isEqualTo(1);
+        assertThat(meterRegistry.get("immersion.sync.episodes.added").summary().totalAmount())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void coalescesWaitingJobsAndAttributesEpisodesToFirstSubmitter() throws Exception {
+        // hold the writer up on its first job while the others queue behind it
+        var locked = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var lock =
+                CompletableFuture.runAsync(
+                        () ->
+                                database.ctx()
+                                        .transaction(
+                                                (Configuration txn) -> {
+                                                    txn.dsl().execute("LOCK TABLE show");
+                                                    locked.countDown();
+                                                    release.await();
+                                                }));
+        locked.await();
+
+        var first = queue.submit(List.of(new SyncEpisodesRequest("show a", "episode 1.mkv")));
+        awaitStatus(first.id(), "running");
+        var second =
+                queue.submit(
+                        List.of(
+                                new SyncEpisodesRequest("show a", "episode 2.mkv"),
+                                new SyncEpisodesRequest("show a", "episode 3.mkv")));
+        var third =
+                queue.submit(
+                        List.of(
+                                new SyncEpisodesRequest("show a", "episode 1.mkv"),
+                                new SyncEpisodesRequest("show a", "episode 3.mkv"),
+                                new SyncEpisodesRequest("show a", "episode 4.mkv")));
+        assertThat(queue.job(second.id()).orElseThrow().status()).isEqualTo("queued");
+
+        release.countDown();
+        lock.get();
+
+        assertThat(await(first.id()).episodesAdded()).isEqualTo(1);
+        assertThat(await(second.id()).episodesAdded()).isEqualTo(2);
+        assertThat(await(third.id()).episodesAdded()).isEqualTo(1);
+        assertThat(database.ctx().fetchCount(EPISODE)).isEqualTo(4);
+
+        var batchJobs = meterRegistry.get("immersion.sync.queue.batch.jobs").summary();
+        assertThat(batchJobs.count()).isEqualTo(2);
+        assertThat(batchJobs.max()).isEqualTo(2);
+    }
+
+    @Test
+    void failsJobWhenWriteFails() throws Exception {
+        // postgres rejects null characters in text
+        var submitted = queue.submit(List.of(new SyncEpisodesRequest("show \u0000", "episode")));
+
+        var job = await(submitted.id());
+        assertThat(job.status()).isEqualTo("failed");
+        assertThat(job.episodesAdded()).isNull();
+        assertThat(job.error()).isEqualTo("failed to write episodes");
+        assertThat(dataVersion.current().version()).isEqualTo(0);
+    }
+
+    @Test
+    void rejectsJobsWhenFull() {
+        var episodes = new SyncEpisodesRequest[11];
+        for (var i = 0; i < episodes.length; i++) {
+            episodes[i] = new SyncEpisodesRequest("show a", "episode " + i + ".mkv");
+        }
+
+        assertThatThrownBy(() -> queue.submit(List.of(episodes)))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("sync queue is full");
+    }
+
+    private SyncIngestionQueue.Job await(UUID id) throws InterruptedException {
+        var deadline = Instant.now().plus(Duration.ofSeconds(30));
+        while (Instant.now().isBefore(deadline)) {
+            var job = queue.job(id).orElseThrow();
+            if (FINISHED.contains(job.status())) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("job did not finish: " + id);
+    }
+
+    private void awaitStatus(UUID id, String status) throws InterruptedException {
+        var deadline = Instant.now().plus(Duration.ofSeconds(30));
+        while (!queue.job(id).orElseThrow().status().equals(status)) {
+            if (Instant.now().isAfter(deadline)) {
+                throw new AssertionError("job never became " + status + ": " + id);
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static com.jordansimsmith.immersion.tracker.jooq.Tables.SHOW;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.io.IOException;
+import java.sql.SQLException;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+
+/** Embedded Postgres with the migrations applied, for tests which need a real database. */
+class TestDatabase implements AutoCloseable {
+    private final EmbeddedPostgres embedded;
+    private final DSLContext ctx;
+
+    private TestDatabase(EmbeddedPostgres embedded) {
+        this.embedded = embedded;
+        this.ctx =
+                DSL.using(
+                        embedded.getDatabase(
+                                EmbeddedDatabase.USERNAME, EmbeddedDatabase.DATABASE_NAME),
+                        SQLDialect.POSTGRES);
+    }
+
+    static TestDatabase start() throws IOException, SQLException {
+        return new TestDatabase(EmbeddedDatabase.start());
+    }
+
+    /** Backed by a data source, so each query or transaction gets its own connection. */
+    DSLContext ctx() {
+        return ctx;
+    }
+
+    /** Deletes every show, along with their episodes and daily counts. */
+    void clear() {
+        ctx.truncate(SHOW).restartIdentity().cascade().execute();
+    }
+
+    @Override
+    public void close() throws IOException {
+        embedded.close();
+    }
+}
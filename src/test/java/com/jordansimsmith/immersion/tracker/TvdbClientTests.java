@@ -0,0 +1,207 @@
+package com.jordansimsmith.immersion.tracker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TvdbClientTests {
+    private final AtomicInteger logins = new AtomicInteger();
+    private final AtomicInteger seriesRequests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final Set<String> revokedTokens = ConcurrentHashMap.newKeySet();
+    private final Set<String> missingIds = ConcurrentHashMap.newKeySet();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ExecutorService executor;
+    private HttpServer server;
+    private TvdbClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        executor = Executors.newFixedThreadPool(16);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(executor);
+        server.createContext(
+                "/login",
+                exchange -> {
+                    var token = "token-" + logins.incrementAndGet();
+                    respond(
+                            exchange,
+                            200,
+                            "{\"status\": \"success\", \"data\": {\"token\": \"" + token + "\"}}");
+                });
+        server.createContext(
+                "/series/",
+                exchange -> {
+                    seriesRequests.incrementAndGet();
+                    var authorization = exchange.getRequestHeaders().getFirst("Authorization");
+                    if (revokedTokens.contains(authorization.substring("Bearer ".length()))) {
+                        respond(exchange, 401, "{\"status\": \"failure\"}");
+                        return;
+                    }
+
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    inFlight.decrementAndGet();
+
+                    var path = exchange.getRequestURI().getPath();
+                    var id = path.substring(path.lastIndexOf('/') + 1);
+                    if (missingIds.contains(id)) {
+                        respond(exchange, 404, "{\"status\": \"failure\"}");
+                        return;
+                    }
+                    respond(
+                            exchange,
+                            200,
+                            "{\"status\": \"success\", \"data\": {\"name\": \"series "
+                                    + id
+                                    + "\", \"image\": \"https://artworks.thetvdb.com/"
+                                    + id
+                                    + ".jpg\"}}");
+                });
+        server.start();
+
+        client = client(Duration.ofHours(1), 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.close();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void reusesTokenAndCachesSeries() {
+        var first = client.getSeries(1);
+        var second = client.getSeries(2);
+        var cached = client.getSeries(1);
+
+        assertThat(first)
+                .isEqualTo(
+                        new TvdbClient.Series(1, "series 1", "https://artworks.thetvdb.com/1.jpg"));
+        assertThat(second.name()).isEqualTo("series 2");
+        assertThat(cached).isEqualTo(first);
+        assertThat(logins.get()).isEqualTo(1);
+        assertThat(seriesRequests.get()).isEqualTo(2);
+    }
+
+    @Test
+    void resolvesBatchWithBoundedParallelism() {
+        var ids = new ArrayList<Integer>();
+        for (var id = 1; id <= 20; id++) {
+            ids.add(id);
+        }
+
+        var series = client.getSeries(ids);
+
+        assertThat(series).hasSize(20);
+        assertThat(series.get(20).name()).isEqualTo("series 20");
+        assertThat(logins.get()).isEqualTo(1);
+        assertThat(maxInFlight.get()).isBetween(1, 4);
+    }
+
+    @Test
+    void logsInAgainWhenTokenIsRevoked() {
+        client.getSeries(1);
+        revokedTokens.add("token-1");
+
+        var series = client.getSeries(2);
+
+        assertThat(series.name()).isEqualTo("series 2");
+        assertThat(logins.get()).isEqualTo(2);
+        assertThat(requests("series", "error")).isEqualTo(1);
+        assertThat(requests("series", "success")).isEqualTo(2);
+    }
+
+    @Test
+    void resolvesRestOfBatchWhenSeriesFails() {
+        missingIds.add("2");
+
+        var series = client.getSeries(List.of(1, 2, 3));
+
+        assertThat(series).containsOnlyKeys(1, 3);
+        assertThat(series.get(3).name()).isEqualTo("series 3");
+    }
+
+    @Test
+    void evictsEldestSeriesBeyondCacheSize() {
+        client.close();
+        client = client(Duration.ofHours(1), 2);
+
+        client.getSeries(1);
+        client.getSeries(2);
+        client.getSeries(3);
+        client.getSeries(3);
+        client.getSeries(2);
+        assertThat(seriesRequests.get()).isEqualTo(3);
+
+        client.getSeries(1);
+        assertThat(seriesRequests.get()).isEqualTo(4);
+    }
+
+    @Test
+    void fetchesSeriesAgainOnceExpired() throws InterruptedException {
+        client.close();
+        client = client(Duration.ofSeconds(1), 100);
+
+        client.getSeries(1);
+        client.getSeries(1);
+        Thread.sleep(1500);
+        client.getSeries(1);
+
+        assertThat(seriesRequests.get()).isEqualTo(2);
+    }
+
+    private TvdbClient client(Duration cacheTtl, int cacheSize) {
+        return new TvdbClient(
+                "http://localhost:" + server.getAddress().getPort(),
+                "api-key",
+                Duration.ofHours(1),
+                cacheTtl,
+                cacheSize,
+                8,
+                4,
+                meterRegistry);
+    }
+
+    private long requests(String operation, String outcome) {
+        var timer =
+                meterRegistry
+                        .find("immersion.tvdb.requests")
+                        .tags("operation", operation, "outcome", outcome)
+                        .timer();
+        return timer != null ? timer.count() : 0;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (var outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}
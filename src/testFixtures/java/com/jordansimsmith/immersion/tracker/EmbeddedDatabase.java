@@ -0,0 +1,65 @@
+package com.jordansimsmith.immersion.tracker;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Embedded Postgres with the migrations applied, shared by the tests and the benchmarks so both
+ * build their schema the same way.
+ */
+public final class EmbeddedDatabase {
+    public static final String DATABASE_NAME = "immersion_tracker";
+    public static final String USERNAME = "postgres";
+    public static final String PASSWORD = "";
+
+    private EmbeddedDatabase() {}
+
+    /** Starts a new embedded Postgres and migrates it, stopping it again if the migrations fail. */
+    public static EmbeddedPostgres start() throws IOException, SQLException {
+        var embedded = EmbeddedPostgres.builder().start();
+        try {
+            migrate(embedded);
+            return embedded;
+        } catch (IOException | SQLException | RuntimeException e) {
+            embedded.close();
+            throw e;
+        }
+    }
+
+    /** Applies the migrations in order, the first creating the database itself. */
+    private static void migrate(EmbeddedPostgres embedded) throws IOException, SQLException {
+        var directory = Path.of(System.getProperty("migrations.dir", "migrations"));
+        List<Path> migrations;
+        try (Stream<Path> files = Files.list(directory)) {
+            migrations =
+                    files.filter(file -> file.toString().endsWith(".sql"))
+                            .sorted(Comparator.comparingInt(EmbeddedDatabase::migrationNumber))
+                            .toList();
+        }
+
+        for (var i = 0; i < migrations.size(); i++) {
+            var database = i == 0 ? "postgres" : DATABASE_NAME;
+            var url = embedded.getJdbcUrl(USERNAME, database);
+            try (var connection = DriverManager.getConnection(url, USERNAME, PASSWORD);
+                    var statement = connection.createStatement()) {
+                statement.execute(Files.readString(migrations.get(i)));
+            }
+        }
+    }
+
+    private static int migrationNumber(Path migration) {
+        var name = migration.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(0, name.indexOf('-')));
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("migration must start with its number: " + name, e);
+        }
+    }
+}